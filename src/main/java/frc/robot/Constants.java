@@ -10,9 +10,29 @@ import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.RobotBase;
 
 public final class Constants {
 
+        public static enum Mode {
+                /** Running on a real robot. */
+                REAL,
+
+                /** Running a physics simulator. */
+                SIM,
+
+                /** Replaying from a log file. */
+                REPLAY
+        }
+
+        // what to run when not on the robot, SIM for the physics simulator or REPLAY to
+        // replay a log
+        public static final Mode simMode = Mode.SIM;
+
+        public static Mode getMode() {
+                return RobotBase.isReal() ? Mode.REAL : simMode;
+        }
+
         public static final class DIOConstants {
                 public static final int collectorOpticalDIO = 0;
                 public static final int collectorTiltThruBoreDIO = 1;
@@ -37,6 +57,9 @@ public final class Constants {
                 // -28, -25 }; // degrees
                 public static double[] angles = new double[] { -64, -53, -43, -36.5, -32.5, -29.5, -26.5 }; // degrees
 
+                // spacing of the precomputed ShooterLookupTable, inches
+                public static final double lookupTableStep = 0.25;
+
         }
 
         public static final class ShooterConstants {
@@ -57,8 +80,21 @@ public final class Constants {
 
                 public static final double tiltkP = 0;
                 public static final double tiltkD = 0;
-                public static final double elevatorkP = 0;
+                // elevator position loop in Shooter, volts per motor rotation of error
+                public static final double elevatorkP = 0.75;
                 public static final double elevatorkD = 0;
+                // ElevatorFeedforward, volts and volts per rotation/s. kV is the NEO's
+                // 12 V / 5676 RPM, kS and kG still need characterizing
+                public static final double elevatorkS = 0;
+                public static final double elevatorkG = 0;
+                public static final double elevatorkV = 0.12;
+                // profile in motor rotations, about 85% of the NEO's free speed
+                public static final double elevatorMaxVelocity = 80; // rotations/s
+                public static final double elevatorMaxAcceleration = 400; // rotations/s^2
+                public static final double elevatorTolerance = 1.0; // rotations
+                // volts used to creep down onto the bottom hall effect when homing,
+                // once the profile has reached 0 but the hall effect hasn't tripped
+                public static final double elevatorHomingVolts = -1.0;
 
                 // To measure Ks
                 // manually, slowly increase the voltage to the mechanism until it starts to
@@ -76,6 +112,96 @@ public final class Constants {
                 public static final SimpleMotorFeedforward shooterFF = new SimpleMotorFeedforward(0, 0, 0.0);
                 public static final double shooterkP = 0.0;
                 public static final double shooterkD = 0.0;
+
+                // run the flywheels with the roboRIO state space loop instead of SPARK Flex
+                // velocity PID. Can be switched live from the "Flywheel Control Mode" chooser
+                // to compare spin up and recovery times
+                public static final boolean useStateSpaceFlywheel = false;
+
+                // SPARK Flex onboard velocity gains, duty cycle per RPM
+                public static final double flywheelOnboardkP = 0.00015;
+                public static final double flywheelOnboardFF = 0.000155;
+
+                // state space plant, one Vortex per wheel. The moment of inertia is an estimate
+                // from CAD, check it against a spin up in the logs
+                public static final double flywheelMOI = 0.0015; // kg m^2
+                public static final double flywheelGearing = 1.0;
+                // Kalman filter, how much the model and the encoder are trusted, rad/s
+                public static final double flywheelModelStdDev = 3.0;
+                public static final double flywheelMeasurementStdDev = 0.01;
+                // LQR, velocity error that's worth full battery voltage, rad/s
+                public static final double flywheelLQRVelocityTolerance = 8.0;
+
+                // extra voltage while a note is going through the flywheels
+                public static final double noteBoostVolts = 2.0;
+                public static final double noteBoostSeconds = 0.1;
+                // a note leaving the shooter's sensor this long after the indexer stopped
+                // feeding still counts as a shot, the sensor is read before commands run
+                public static final double shotFeedGraceSeconds = 0.1;
+
+                // how close both flywheels have to be to count as spun up
+                public static final double flywheelToleranceRPMs = 100;
+
+                // hold the flywheels at the shooting map's RPMs for where the robot is while
+                // it has a note and is in range, so shots don't spin up from rest. Can be
+                // switched live from the "Flywheel Pre-Spin" chooser
+                public static final boolean usePreSpin = true;
+                // camera to speaker, inches, a bit past the end of the shooting map
+                public static final double preSpinMaxDistance = 180;
+                // fraction of the predicted RPMs to hold, lower costs less battery but saves
+                // less spin up
+                public static final double preSpinRPMFraction = 1.0;
+                // spin up time assumed from rest until one has been measured, the old fixed
+                // wait before shooting
+                public static final double preSpinDefaultColdSpinUpSeconds = 1.0;
+
+                // shot readiness, flywheels have to stay spun up for flywheelReadyCycles in a
+                // row and the tilt has to be within tiltReadyTolerance of its goal, degrees
+                public static final int flywheelReadyCycles = 3;
+                public static final double tiltReadyTolerance = 1.0;
+                // the fixed wait shots used before readiness, also the longest a shot will
+                // wait for it
+                public static final double maxShotWaitSeconds = 1.0;
+
+                // run the tilt with Smart Motion on the SPARK MAX at 1 kHz instead of the
+                // roboRIO profiled PID. Can be switched live from the "Tilt Control Mode"
+                // chooser to compare settling
+                public static final boolean useOnboardTiltControl = false;
+
+                // tilt motor rotations per shooter rotation, negative if the motor's positive
+                // direction is the thru bore's negative
+                public static final double shooterTiltGearRatio = 100.0;
+
+                // roboRIO profiled PID, duty cycle per degree, and the profile both modes use
+                public static final double tiltRIOkP = 0.015;
+                public static final double tiltMaxVelocity = 180; // degrees/s
+                public static final double tiltMaxAcceleration = 135; // degrees/s^2
+
+                // SPARK MAX Smart Motion gains, duty cycle per degree and per degree/s
+                public static final double onboardTiltkP = 0.02;
+                public static final double onboardTiltkD = 0.0;
+                public static final double onboardTiltkFF = 0.0;
+
+                // gravity feedforward, volts to hold the shooter level, and the
+                // getAbsoluteShooterTiltPosDegrees() reading when it is level
+                public static final double tiltkG = 0.0;
+                public static final double tiltLevelAngle = 0.0;
+
+                // the relative encoder is reseeded from the thru bore while the tilt isn't
+                // being driven and they disagree by more than this, degrees
+                public static final double tiltReseedTolerance = 0.5;
+
+                /**
+                 * Time of flight model for ShotSolver
+                 * The note leaves at flywheel surface speed times noteExitEfficiency, after
+                 * shotReleaseDelaySeconds for the indexer to feed it. Both need checking
+                 * against video of real shots
+                 */
+                public static final double flywheelDiameter = Units.inchesToMeters(4.0);
+                public static final double noteExitEfficiency = 0.5;
+                public static final double shotReleaseDelaySeconds = 0.1;
+                // virtual target iterations per cycle, converges in 2-3
+                public static final int shotSolverIterations = 4;
         }
 
         public static final class ClimberConstants {
@@ -126,6 +252,18 @@ public final class Constants {
                 public static final SimpleMotorFeedforward driveFF = new SimpleMotorFeedforward(0.2, 2.5, 0.0);
                 public static final double drivekP = 0.0;
 
+                // run the drive velocity and steer position loops on the SPARK MAXs at 1 kHz
+                // instead of on the roboRIO. Can be switched live from the "Module Control
+                // Mode" chooser to compare tracking error
+                public static final boolean useOnboardClosedLoop = false;
+
+                // SPARK MAX onboard gains. Steer is duty cycle per radian of error, same units
+                // as rotationkP. Drive is duty cycle per m/s of error on top of driveFF, which
+                // is sent as arbitrary feedforward
+                public static final double onboardRotationkP = 0.5;
+                public static final double onboardRotationkD = 0.0;
+                public static final double onboardDrivekP = 0.1;
+
         }
 
         public static final class SwerveBaseConstants {
@@ -145,12 +283,16 @@ public final class Constants {
                 public static final double driveGearRatio = (6.75 / 1.0); // 6.75:1
                 public static final double angleGearRatio = ((150.0 / 7.0) / 1.0); // 150/7:1
 
-                public static final SwerveDriveKinematics kinematics = new SwerveDriveKinematics(
+                // module locations relative to the robot center, in module ID order
+                public static final Translation2d[] moduleTranslations = new Translation2d[] {
                                 new Translation2d(trackWidth / 2.0, wheelBase / 2.0), // front left
                                 new Translation2d(trackWidth / 2.0, -wheelBase / 2.0), // front right
                                 new Translation2d(-trackWidth / 2.0, wheelBase / 2.0), // rear left
                                 new Translation2d(-trackWidth / 2.0, -wheelBase / 2.0) // rear right
-                );
+                };
+
+                public static final SwerveDriveKinematics kinematics = new SwerveDriveKinematics(
+                                moduleTranslations);
 
                 /* Swerve Profiling Values */
 
@@ -158,6 +300,43 @@ public final class Constants {
 
                 public static final double maxAngularVelocity = 11.5;
 
+                // rate the odometry thread samples the drive encoders, integrated steer
+                // encoders and navX at, in Hz. 200 Hz is the fastest the navX will update over
+                // SPI
+                public static final double odometryFrequencyHz = 200.0;
+
+                // after the drive encoders are reset, odometry samples are dropped until every
+                // module reads within odometryResetToleranceMeters of zero, about what the
+                // robot covers at full speed in the time the reset takes to show up, or until
+                // odometryResetTimeoutSeconds passes
+                public static final double odometryResetToleranceMeters = 0.25;
+                public static final double odometryResetTimeoutSeconds = 0.25;
+
+                // how far back SwerveBase.getPoseAt() can look, in seconds
+                public static final double poseHistorySeconds = 2.0;
+
+                // slip detection, see utils/SlipDetector. A module is replaced when the robot
+                // velocity it implies is off from the other modules' by more than
+                // slipVelocityThreshold m/s plus slipVelocityFraction of the speed
+                public static final double slipVelocityThreshold = 0.5;
+                public static final double slipVelocityFraction = 0.25;
+                // velocities are measured across this many odometry samples, which span 20ms at
+                // 200 Hz or four position status frames, so one stale frame only moves them by
+                // a quarter
+                public static final int slipWindowSamples = 5;
+                // samples in a row a module has to be over the threshold before it's replaced
+                public static final int slipPersistSamples = 3;
+                // navX acceleration that counts as a hit, m/s^2
+                public static final double collisionAccelThreshold = 15.0;
+                // wheel acceleration beyond the navX's that counts as every wheel spinning,
+                // m/s^2
+                public static final double wheelSpinAccelThreshold = 8.0;
+                // how long after a detection vision is trusted more, and by how much the
+                // vision std devs are scaled down. The 2024 estimator can't change its state
+                // std devs after construction, so this stands in for inflating them
+                public static final double slipWindowSeconds = 0.5;
+                public static final double slipVisionStdDevScale = 0.2;
+
                 public static final int frontLeftRotationMotorId = 6;
                 public static final int frontLeftDriveMotorId = 5;
 
@@ -200,6 +379,15 @@ public final class Constants {
                 public static final double kTeleDriveMaxSpeedMetersPerSecond = 7.5 / 4.0;
                 public static final double kTeleDriveMaxAngularSpeedRadiansPerSecond = 3.5;
 
+                // AimAtSpeakerCmd's profiled heading controller, radians
+                public static final double aimkP = 5.0;
+                public static final double aimkD = 0.1;
+                public static final double aimTolerance = Units.degreesToRadians(2.0);
+                // the shooter faces out the back of the robot, same as the camera
+                public static final double aimHeadingOffset = Math.PI;
+                // how far back the pose history is looked at to get the robot's velocity
+                public static final double aimVelocityLookbackSeconds = 0.1;
+
         }
 
         public static final class VisionConstants {
@@ -240,6 +428,41 @@ public final class Constants {
                                 new Rotation3d(Units.degreesToRadians(180), Units.degreesToRadians(-36),
                                                 Units.degreesToRadians(180)));
 
+                /**
+                 * Per measurement vision std devs, see Vision.getEstimationStdDevs()
+                 * Multi-tag and single tag estimates start from their own base, which is
+                 * scaled up by (1 + average tag distance^2 / distanceStdDevScale) and by
+                 * (1 + ambiguity * ambiguityStdDevScale) for single tags
+                 * Single tags farther than maxSingleTagDistance are effectively ignored
+                 */
+                public static final Vector<N3> MULTI_TAG_STDS = VecBuilder.fill(0.3, 0.3, 0.5);
+                public static final Vector<N3> SINGLE_TAG_STDS = VecBuilder.fill(2.0, 2.0, 8.0);
+                public static final double distanceStdDevScale = 30.0;
+                public static final double ambiguityStdDevScale = 10.0;
+                public static final double maxSingleTagDistance = 4.0; // meters
+
+                /**
+                 * Vision gating, see utils/VisionGate
+                 * Estimates more than fieldBorderMargin meters off the field, more than
+                 * maxPoseHeight meters off the carpet or rolled/pitched more than maxPoseTilt
+                 * radians are thrown out
+                 * GATE_ODOMETRY_STDS is how far odometry is expected to have drifted, added to
+                 * the measurement's std devs for the Mahalanobis test against
+                 * maxMahalanobisSquared (99% for 3 degrees of freedom)
+                 */
+                public static final double fieldBorderMargin = 0.5;
+                public static final double maxPoseHeight = 0.5;
+                public static final double maxPoseTilt = Units.degreesToRadians(15);
+                public static final Vector<N3> GATE_ODOMETRY_STDS = VecBuilder.fill(0.5, 0.5, 0.3);
+                public static final double maxMahalanobisSquared = 11.34;
+                // if nothing has been accepted for this long, stop comparing against odometry
+                public static final double maxGateRejectSeconds = 2.0;
+
+                // every camera on the robot, cameraNames[i] is mounted at robotToCams[i]
+                // camera 0 is the one aiming and note commands use
+                public static final String[] cameraNames = { "hhCam" };
+                public static final Transform3d[] robotToCams = { robotToCam };
+
         }
 
         public static final class AutoConstants {
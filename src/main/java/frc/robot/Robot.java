@@ -4,8 +4,6 @@
 
 package frc.robot;
 
-import java.util.Optional;
-
 import org.littletonrobotics.junction.LogFileUtil;
 import org.littletonrobotics.junction.LoggedRobot;
 import org.littletonrobotics.junction.Logger;
@@ -20,7 +18,6 @@ import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.wpilibj.AddressableLED;
 import edu.wpi.first.wpilibj.AddressableLEDBuffer;
 import edu.wpi.first.wpilibj.DriverStation;
-import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.PowerDistribution;
 import edu.wpi.first.wpilibj.PowerDistribution.ModuleType;
 import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
@@ -28,6 +25,7 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
+import frc.robot.utils.FieldGeometry;
 import frc.robot.utils.LocalADStarAK;
 
 /**
@@ -54,20 +52,24 @@ public class Robot extends LoggedRobot {
 
     // DO THIS FIRST
     Pathfinding.setPathfinder(new LocalADStarAK());
-    // Instantiate our RobotContainer. This will perform all our button bindings,
-    // and put our
-    // autonomous chooser on the dashboard.
-    m_robotContainer = new RobotContainer();
     Logger.recordMetadata("ProjectName", "MyProject"); // Set a metadata value
 
-    if (isReal()) {
-      Logger.addDataReceiver(new NT4Publisher()); // Publish data to NetworkTables
-      new PowerDistribution(55, ModuleType.kRev); // Enables power distribution logging
-    } else {
-      setUseTiming(false); // Run as fast as possible
-      String logPath = LogFileUtil.findReplayLog(); // Pull the replay log from AdvantageScope (or prompt the user)
-      Logger.setReplaySource(new WPILOGReader(logPath)); // Read replay log
-      Logger.addDataReceiver(new WPILOGWriter(LogFileUtil.addPathSuffix(logPath, "_sim"))); // Save outputs to a new log
+    switch (Constants.getMode()) {
+      case REAL:
+        Logger.addDataReceiver(new NT4Publisher()); // Publish data to NetworkTables
+        new PowerDistribution(55, ModuleType.kRev); // Enables power distribution logging
+        break;
+
+      case SIM:
+        Logger.addDataReceiver(new NT4Publisher()); // Physics sim, publish data to NetworkTables
+        break;
+
+      case REPLAY:
+        setUseTiming(false); // Run as fast as possible
+        String logPath = LogFileUtil.findReplayLog(); // Pull the replay log from AdvantageScope (or prompt the user)
+        Logger.setReplaySource(new WPILOGReader(logPath)); // Read replay log
+        Logger.addDataReceiver(new WPILOGWriter(LogFileUtil.addPathSuffix(logPath, "_sim"))); // Save outputs to a new log
+        break;
     }
 
     // Logger.disableDeterministicTimestamps() // See "Deterministic Timestamps" in
@@ -75,6 +77,13 @@ public class Robot extends LoggedRobot {
     Logger.start(); // Start logging! No more data receivers, replay sources, or metadata values may
                     // be added.
 
+    // Instantiate our RobotContainer. This will perform all our button bindings,
+    // and put our
+    // autonomous chooser on the dashboard.
+    // Done after the logger starts so the subsystems' first inputs are logged
+    m_robotContainer = new RobotContainer();
+    updateAlliance();
+
     // CameraServer.startAutomaticCapture();
     // webcam.setResolution(1280/10, 720/10);
     // SmartDashboard.putNumber("fps", webcam.getActualFPS());
@@ -111,6 +120,8 @@ public class Robot extends LoggedRobot {
     // block in order for anything in the Command-based framework to work.
     CommandScheduler.getInstance().run();
 
+    m_robotContainer.getShotLogger().update();
+
     // if (RobotContainer.getShooter().isNotePresent()) {
     // RobotContainer.getShooter().indexerMotor.set(0);
     // RobotContainer.getCollector().rollerMotor.set(0);
@@ -118,25 +129,14 @@ public class Robot extends LoggedRobot {
 
     SmartDashboard.putData("cmdScheduler", CommandScheduler.getInstance());
 
-    try {
-      Optional<Alliance> ally = DriverStation.getAlliance();
-      if (ally.isPresent()) {
-        if (ally.get() == Alliance.Red) {
-          RobotContainer.isRed = true;
-        }
-        if (ally.get() == Alliance.Blue) {
-          RobotContainer.isRed = false;
-
-        }
-      } else {
-        System.out.println("NO COLOR YET");
-      }
-    } catch (NullPointerException ex) {
+  }
 
-      RobotContainer.isRed = RobotContainer.allianceChooser.getSelected();
-    }
+  // picks up the alliance from the driver station, or the chooser if there isn't
+  // one yet. The alliance can only change while disabled
+  private void updateAlliance() {
+    FieldGeometry.updateAlliance(RobotContainer.allianceChooser.getSelected());
+    RobotContainer.isRed = FieldGeometry.isRed();
     SmartDashboard.putBoolean("isRED?", RobotContainer.isRed);
-
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
@@ -149,6 +149,7 @@ public class Robot extends LoggedRobot {
 
   @Override
   public void disabledPeriodic() {
+    updateAlliance();
   }
 
   /**
@@ -157,6 +158,7 @@ public class Robot extends LoggedRobot {
    */
   @Override
   public void autonomousInit() {
+    updateAlliance();
     // m_robotContainer.getExtendArm().setServoAngle(Constants.ArmConstants.restServoAngle);
     // m_robotContainer.getSwerveSubsytem().getNavX().reset();
     // m_robotContainer.getSwerveSubsytem().getOdometry().resetPosition(new
@@ -184,6 +186,7 @@ public class Robot extends LoggedRobot {
 
   @Override
   public void teleopInit() {
+    updateAlliance();
     // m_robotContainer.getSwerveBase().resetOdometry(new Pose2d(0, 0, new
     // Rotation2d(Math.PI * 2)));
     // m_robotContainer.getSwerveBase().resetOdometry(new Pose2d(0, 0, new
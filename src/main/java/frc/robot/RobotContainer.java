@@ -51,6 +51,8 @@ import frc.robot.commands.ShooterCmds.ShootAtRPMsCmd;
 import frc.robot.commands.ShooterCmds.TiltShooterToCollectorCmd;
 import frc.robot.commands.ShooterCmds.TiltShooterToRestPosCmd;
 import frc.robot.commands.ShooterCmds.TiltShooterToSetpointCmd;
+import frc.robot.commands.ShooterCmds.WaitUntilReadyToShootCmd;
+import frc.robot.commands.VisionCmds.AimAtSpeakerCmd;
 import frc.robot.commands.VisionCmds.ParallelTurnToAngleCmd;
 import frc.robot.commands.VisionCmds.TurnToAngleCmd;
 import frc.robot.subsystems.Climber;
@@ -59,6 +61,8 @@ import frc.robot.subsystems.LEDStrip;
 import frc.robot.subsystems.Shooter;
 import frc.robot.subsystems.SwerveBase;
 import frc.robot.subsystems.Vision;
+import frc.robot.utils.ShotLogger;
+import frc.robot.utils.ShotSolver;
 
 // import com.pathplanner.lib.*;
 // import com.pathplanner.lib.commands.PPSwerveControllerCommand;
@@ -118,7 +122,21 @@ public class RobotContainer {
 
         private final static Shooter shooter = new Shooter();
 
-        private static final Vision vision = new Vision();
+        private static final Vision vision = Vision.getInstance();
+
+        private static final ShotSolver shotSolver = new ShotSolver(swerveBase);
+
+        private static final ShotLogger shotLogger = new ShotLogger(shooter, shotSolver);
+
+        // kept so aiming can take over just the rotation while the driver translates
+        private final TeleopSwerveCmd teleopSwerveCmd = new TeleopSwerveCmd(swerveBase,
+                        () -> logitech.getRawAxis(kLogitechTranslationAxis),
+                        () -> logitech.getRawAxis(kLogitechStrafeAxis),
+                        () -> logitech.getRawAxis(kLogitechRotationAxis),
+                        () -> logitech.getRawAxis(kLogitechSliderAxis),
+                        () -> !logitech.getRawButton(kFieldOriented),
+                        () -> logitech.getRawButton(kInverted), () -> logitech.getRawButton(kStrafeOnly),
+                        () -> logitech.getRawButton(kSlowEverything));
 
         public static Pose2d speakerPose = new Pose2d();
 
@@ -139,6 +157,9 @@ public class RobotContainer {
          */
         public RobotContainer() {
 
+                // pre-spin holds the flywheels at the shooting map's RPMs for this distance
+                shooter.setShotDistanceSupplier(shotSolver::getSpeakerDistanceInches);
+
                 var field = new Field2d();
                 SmartDashboard.putData("Field", field);
 
@@ -196,7 +217,7 @@ public class RobotContainer {
                                                 -61),
                                                 new ShootAtRPMsCmd(shooter,
                                                                 3000),
-                                                new SequentialCommandGroup(new WaitCommand(1).andThen(
+                                                new SequentialCommandGroup(new WaitUntilReadyToShootCmd(shooter).andThen(
                                                                 new RunIndexerCmd(shooter)
                                                                                 .withTimeout(1))))
                                                 .withTimeout(1.66));
@@ -206,7 +227,7 @@ public class RobotContainer {
                                                 -35),
                                                 new ShootAtRPMsCmd(shooter,
                                                                 3750),
-                                                new SequentialCommandGroup(new WaitCommand(1).andThen(
+                                                new SequentialCommandGroup(new WaitUntilReadyToShootCmd(shooter).andThen(
                                                                 new RunIndexerCmd(shooter)
                                                                                 .withTimeout(1.5))))
                                                 .withTimeout(1.66));
@@ -216,7 +237,7 @@ public class RobotContainer {
                                                 -36),
                                                 new ShootAtRPMsCmd(shooter,
                                                                 4000),
-                                                new SequentialCommandGroup(new WaitCommand(1).andThen(
+                                                new SequentialCommandGroup(new WaitUntilReadyToShootCmd(shooter).andThen(
                                                                 new RunIndexerCmd(shooter)
                                                                                 .withTimeout(1.5))))
                                                 .withTimeout(1.66));
@@ -226,7 +247,7 @@ public class RobotContainer {
                                                 -34.5),
                                                 new ShootAtRPMsCmd(shooter,
                                                                 4000),
-                                                new SequentialCommandGroup(new WaitCommand(1).andThen(
+                                                new SequentialCommandGroup(new WaitUntilReadyToShootCmd(shooter).andThen(
                                                                 new RunIndexerCmd(shooter)
                                                                                 .withTimeout(1.5))))
                                                 .withTimeout(1.66));
@@ -263,14 +284,7 @@ public class RobotContainer {
                 // invertButton.toggleOnTrue(new InstantCommand(() -> isbeinginverted =
                 // !isbeinginverted)); invert toggle button
 
-                swerveBase.setDefaultCommand(new TeleopSwerveCmd(swerveBase,
-                () -> logitech.getRawAxis(kLogitechTranslationAxis),
-                () -> logitech.getRawAxis(kLogitechStrafeAxis),
-                () -> logitech.getRawAxis(kLogitechRotationAxis),
-                () -> logitech.getRawAxis(kLogitechSliderAxis),
-                () -> !logitech.getRawButton(kFieldOriented),
-                () -> logitech.getRawButton(kInverted), () -> logitech.getRawButton(kStrafeOnly),
-                    () -> logitech.getRawButton(kSlowEverything)));
+                swerveBase.setDefaultCommand(teleopSwerveCmd);
 
                 // collector.setDefaultCommand(new MoveCollectorToSetpointCmd(collector,
                 // CollectorConstants.collectorTiltAlignToShooterPos)
@@ -294,7 +308,7 @@ public class RobotContainer {
         private void configureButtonBindings() {
                 /* Driver Buttons */
 
-                zeroGyro.onTrue(new InstantCommand(() -> swerveBase.getNavX().zeroYaw()));
+                zeroGyro.onTrue(new InstantCommand(() -> swerveBase.zeroHeading()));
 
                 // red
                 // goToTag.whileTrue(new PathfindToTagCmd(swerveBase, vision, 4, 40));
@@ -377,7 +391,7 @@ public class RobotContainer {
 
                 /* RESET SHOOTER ELEVATOR TO HOME */
                 new JoystickButton(buttonBox, 5)
-                                .whileTrue(new ParallelCommandGroup(new MoveShooterElevatorDownCmd(shooter, 1),
+                                .whileTrue(new ParallelCommandGroup(new MoveShooterElevatorDownCmd(shooter, 0),
                                                 new TiltShooterToCollectorCmd(shooter)));
 
                 /* AMP */
@@ -386,7 +400,7 @@ public class RobotContainer {
 
                 /* AUTO ALIGN VISION */
                 new JoystickButton(buttonBox, 11)
-                                .whileTrue(new TurnToAngleCmd(swerveBase, vision));
+                                .whileTrue(new AimAtSpeakerCmd(swerveBase));
 
                 /* SHOOTER ELEVATOR TO TRAP POS */
                 // new JoystickButton(buttonBox, 10)
@@ -405,6 +419,12 @@ public class RobotContainer {
                 // new JoystickButton(buttonBox, 6)
                 // .whileTrue(new MoveShooterElevatorToSetpointCmd(shooter, 30));
 
+                /* SHOT MADE / MISSED, for refitting the shooting map */
+                new JoystickButton(buttonBox, 9)
+                                .onTrue(new InstantCommand(() -> shotLogger.markLastShot(true)).ignoringDisable(true));
+                new JoystickButton(buttonBox, 10)
+                                .onTrue(new InstantCommand(() -> shotLogger.markLastShot(false)).ignoringDisable(true));
+
                 /* SHOOTER EJECT TO TRAP */
                 new JoystickButton(buttonBox, 12)
                                 .whileTrue(new InstantCommand(() -> shooter.setIndexMotorSpeed(1)))
@@ -432,13 +452,13 @@ public class RobotContainer {
                 /* WINDOW BUTTON - AUTO ALIGN */
                 new JoystickButton(controller, 7).whileTrue(new ScoreAmpCmd(shooter));
                 new JoystickButton(controller, 8)
-                                .whileTrue(new ParallelCommandGroup(new MoveShooterElevatorDownCmd(shooter, 1),
+                                .whileTrue(new ParallelCommandGroup(new MoveShooterElevatorDownCmd(shooter, 0),
                                                 new TiltShooterToCollectorCmd(shooter)));
 
                 /* LEFT BUMPER - VISION SHOOT */
                 new JoystickButton(controller, 5)
-                                .whileTrue(new TurnToAngleCmd(swerveBase, vision)
-                                                .alongWith(new VisionShootCmd(shooter, vision)));
+                                .whileTrue(new AimAtSpeakerCmd(swerveBase, shotSolver, teleopSwerveCmd)
+                                                .alongWith(new VisionShootCmd(shooter, shotSolver)));
                 // new JoystickButton(controller, 5)
                 // .whileTrue(new TurnToAngleCmd(swerveBase, vision));
 
@@ -501,4 +521,8 @@ public class RobotContainer {
                 return collector;
         }
 
+        public ShotLogger getShotLogger() {
+                return shotLogger;
+        }
+
 }
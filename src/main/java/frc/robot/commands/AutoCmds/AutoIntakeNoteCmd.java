@@ -27,13 +27,17 @@ public class AutoIntakeNoteCmd extends Command {
 
   @Override
   public void initialize() {
-
+    collector.armNoteStop();
   }
 
   @Override
   public void execute() {
 
-    collector.setRollerMotor(0.4);
+    // once the interrupt has stopped the roller, don't restart it for the cycle
+    // before the command gets ended
+    if (!collector.isNotePresent()) {
+      collector.setRollerMotor(0.4);
+    }
 
     // if (collector.isNotePresent()) {
 
@@ -52,6 +56,7 @@ public class AutoIntakeNoteCmd extends Command {
   // Called once the command ends or is interrupted.
   @Override
   public void end(boolean interrupted) {
+    collector.disarmNoteStop();
     collector.rollerMotor.set(0);
 
     // CommandScheduler.getInstance().schedule(new TiltShooterToSetpointCmd(shooter,
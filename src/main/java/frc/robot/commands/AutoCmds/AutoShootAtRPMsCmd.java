@@ -6,8 +6,6 @@ package frc.robot.commands.AutoCmds;
 
 import org.littletonrobotics.junction.Logger;
 
-import com.revrobotics.CANSparkMax;
-
 import edu.wpi.first.wpilibj2.command.Command;
 
 import frc.robot.subsystems.Shooter;
@@ -46,10 +44,7 @@ public class AutoShootAtRPMsCmd extends Command {
     // shooter.indexerMotor.set(-0.33);
     // }
 
-    shooter.shooterUpperController.setReference(desiredRPMs,
-        CANSparkMax.ControlType.kVelocity);
-    shooter.shooterLowerController.setReference(desiredRPMs,
-        CANSparkMax.ControlType.kVelocity);
+    shooter.setFlywheelRPMs(desiredRPMs);
 
   }
 
@@ -6,21 +6,18 @@ package frc.robot.commands.AutoCmds;
 
 import org.littletonrobotics.junction.Logger;
 
-import edu.wpi.first.math.MathUtil;
-import edu.wpi.first.math.controller.ProfiledPIDController;
-import edu.wpi.first.math.trajectory.TrapezoidProfile;
-import edu.wpi.first.math.trajectory.TrapezoidProfile.State;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.subsystems.Shooter;
 
 public class AutoTiltShooterToSetpointCmd extends Command {
+
+    /**
+     * Same as TiltShooterToSetpointCmd, but keeps the tilt held at the setpoint
+     * after it's interrupted instead of stopping the motor
+     */
+
     Shooter shooter;
     double setpoint;
-    // PIDController tiltController = new PIDController(2, 0, 0.05);
-
-    ProfiledPIDController tiltController = new ProfiledPIDController(0.015,
-            0, 0.0,
-            new TrapezoidProfile.Constraints(180, 135));
 
     /** Creates a new MoveCollectorCmd. */
 
@@ -36,9 +33,7 @@ public class AutoTiltShooterToSetpointCmd extends Command {
     @Override
     public void initialize() {
 
-        tiltController.setTolerance(1.5);
-        tiltController.reset(shooter.getAbsoluteShooterTiltPosDegrees());
-        // tiltController.enableContinuousInput(-90, 90);
+        shooter.setTiltGoalDegrees(setpoint);
 
     }
 
@@ -46,15 +41,6 @@ public class AutoTiltShooterToSetpointCmd extends Command {
     @Override
     public void execute() {
 
-        // double pidOutout = tiltController.calculate(shooter.getShooterTiltPos(),
-        // setpoint);
-
-        double pidOutout = tiltController.calculate(shooter.getAbsoluteShooterTiltPosDegrees(),
-                new State(setpoint, 0));
-
-        shooter.shooterTiltMotor.set(MathUtil.clamp(pidOutout, -1.0, 1.0));
-
-        Logger.recordOutput("tilt pidOutout", pidOutout);
         Logger.recordOutput("tilt setpoint", setpoint);
 
     }
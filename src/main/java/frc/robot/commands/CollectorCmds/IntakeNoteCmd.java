@@ -35,6 +35,9 @@ public class IntakeNoteCmd extends Command {
   // Called when the command is initially scheduled.
   @Override
   public void initialize() {
+    // the roller stops the moment the note trips the sensor, the handoff is still
+    // scheduled from execute()
+    collector.armNoteStop();
   }
 
   // Called every time the scheduler runs while the command is scheduled.
@@ -91,6 +94,7 @@ public class IntakeNoteCmd extends Command {
   // Called once the command ends or is interrupted.
   @Override
   public void end(boolean interrupted) {
+    collector.disarmNoteStop();
     collector.rollerMotor.set(0);
 
   }
@@ -70,7 +70,7 @@ public class PathfindToTagCmd extends SequentialCommandGroup {
                 var robotPose3d = new Pose3d(robotPose2d.getX(), robotPose2d.getY(), 0,
                                 new Rotation3d(0, 0, robotPose2d.getRotation().getRadians()));
 
-                var result = vision.getCamera().getLatestResult();
+                var result = vision.getLatestResult();
 
                 if (result.hasTargets() == false) {
                         return new InstantCommand();
@@ -4,56 +4,57 @@
 
 package frc.robot.commands.ScoringCmds;
 
-import java.util.Set;
+import org.littletonrobotics.junction.Logger;
 
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
-import edu.wpi.first.wpilibj2.command.Commands;
-
-import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
-import frc.robot.commands.ShooterCmds.ShootAtRPMsCmd;
-import frc.robot.commands.ShooterCmds.TiltShooterToSetpointCmd;
 import frc.robot.subsystems.Shooter;
-import frc.robot.subsystems.Vision;
+import frc.robot.utils.ShotSolver;
+
+public class VisionShootCmd extends Command {
+
+  /**
+   * Spins the flywheels and tilts the shooter to the ShotSolver's solution,
+   * updated every cycle so it keeps tracking while the robot drives
+   * Run it alongside an AimAtSpeakerCmd using the same solver for the heading
+   */
 
-// NOTE:  Consider using this command inline, rather than writing a subclass.  For more
-// information, see:
-// https://docs.wpilib.org/en/stable/docs/software/commandbased/convenience-features.html
-public class VisionShootCmd extends SequentialCommandGroup {
   Shooter shooter;
-  Vision vision;
-  double distanceToSpeaker;
-  double[] desiredShooterState;
-  double desiredShooterVelocity;
-  double desiredShooterAngle;
-
-  /** Creates a new VisionShootSequentialCmd. */
-  public VisionShootCmd(Shooter shooter, Vision vision) {
+  ShotSolver shotSolver;
+
+  /** Creates a new VisionShootCmd. */
+  public VisionShootCmd(Shooter shooter, ShotSolver shotSolver) {
     this.shooter = shooter;
-    this.vision = vision;
+    this.shotSolver = shotSolver;
+  }
+
+  @Override
+  public void execute() {
+
+    double desiredShooterVelocity = shotSolver.getVelocityRPMs();
+    double desiredShooterAngle = shotSolver.getTiltDegrees();
+
+    shooter.setFlywheelRPMs(desiredShooterVelocity);
+
+    shooter.setTiltGoalDegrees(desiredShooterAngle);
+
+    Logger.recordOutput("desiredShooterVelocity", desiredShooterVelocity);
+    Logger.recordOutput("desiredShooterAngle", desiredShooterAngle);
 
-    // Add your commands in the addCommands() call, e.g.
-    // addCommands(new FooCommand(), new BarCommand());
-    // addCommands(new ProxyCommand(() -> getCommand()));
-    addCommands(Commands.defer(() -> getCommand(), Set.of(shooter, vision)));
   }
 
-  public Command getCommand() {
+  @Override
+  public void end(boolean interrupted) {
 
-    distanceToSpeaker = vision.distanceToSpeakerFieldToCamera;
+    shooter.stopShooterVelocityMotors();
+    shooter.stopShooterTiltMotor();
 
-    desiredShooterState = shooter.calculateDesiredShooterState(distanceToSpeaker);
-    desiredShooterVelocity = desiredShooterState[0];
-    desiredShooterAngle = desiredShooterState[1];
+  }
 
-    SmartDashboard.putNumber("desiredShooterVelocity", desiredShooterVelocity);
-    SmartDashboard.putNumber("desiredShooterAngle", desiredShooterAngle);
+  // tracks for as long as it's held
+  @Override
+  public boolean isFinished() {
 
-    return new TiltShooterToSetpointCmd(shooter,
-        desiredShooterState[1])
-        .alongWith(
-            new ShootAtRPMsCmd(shooter,
-                desiredShooterState[0]));
+    return false;
 
   }
 
@@ -23,6 +23,8 @@ public class ShooterAndCollectorIndexerCmd extends Command {
   // Called when the command is initially scheduled.
   @Override
   public void initialize() {
+    // stops both from the sensor's interrupt instead of waiting for isFinished()
+    shooter.armNoteStop(collector.rollerMotor::stopMotor);
   }
 
   // Called every time the scheduler runs while the command is scheduled.
@@ -37,6 +39,7 @@ public class ShooterAndCollectorIndexerCmd extends Command {
   // Called once the command ends or is interrupted.
   @Override
   public void end(boolean interrupted) {
+    shooter.disarmNoteStop();
     shooter.setIndexMotorSpeed(0);
     collector.setRollerMotor(0);
   }
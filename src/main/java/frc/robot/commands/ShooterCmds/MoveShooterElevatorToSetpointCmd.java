@@ -4,44 +4,24 @@
 
 package frc.robot.commands.ShooterCmds;
 
-import edu.wpi.first.math.controller.ElevatorFeedforward;
-import edu.wpi.first.math.controller.ProfiledPIDController;
-import edu.wpi.first.math.trajectory.TrapezoidProfile;
-import edu.wpi.first.math.trajectory.TrapezoidProfile.State;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
-import frc.robot.Constants.ShooterConstants;
 import frc.robot.subsystems.Shooter;
 
 public class MoveShooterElevatorToSetpointCmd extends Command {
+
+  /**
+   * Moves the elevator to a setpoint with the Shooter's elevator loop, which
+   * keeps holding it there after this finishes
+   */
+
   Shooter shooter;
   double setPoint;
-  double kP, kD, kV, maxVel, maxAcc;
-  ProfiledPIDController profiledPIDController;
-  ElevatorFeedforward elevatorFeedforward;
-  double currentPosition;
 
   /** Creates a new ElevateToAmpCmd. */
   public MoveShooterElevatorToSetpointCmd(Shooter shooter, double setPoint) {
     this.shooter = shooter;
     this.setPoint = setPoint;
 
-    // Constraints Coefficients
-    maxVel = 250;
-    maxAcc = 125;
-
-    // PID coefficients
-    kP = 0.75;
-    kD = 0;
-    kV = 0.05;
-
-    profiledPIDController = new ProfiledPIDController(kP, 0, kD,
-        new TrapezoidProfile.Constraints(maxVel, maxAcc));
-
-    profiledPIDController.setGoal(new State(setPoint, 0));
-
-    elevatorFeedforward = new ElevatorFeedforward(0, 0, kV);
-
     addRequirements(shooter);
 
     // Use addRequirements() here to declare subsystem dependencies.
@@ -51,36 +31,8 @@ public class MoveShooterElevatorToSetpointCmd extends Command {
   @Override
   public void initialize() {
 
-    profiledPIDController.setTolerance(1);
-    profiledPIDController.reset(shooter.elevatorMotor.getEncoder().getPosition());
-
-  }
-
-  // Called every time the scheduler runs while the command is scheduled.
-  @Override
-  public void execute() {
-
-    currentPosition = shooter.elevatorMotor.getEncoder().getPosition();
-
-    // goal = final target of mechanism
-    double pidOutput = profiledPIDController.calculate(currentPosition,
-        setPoint);
-
-    double pidVelocitySetpoint = profiledPIDController.getSetpoint().velocity;
-    // SmartDashboard.putNumber("desiredVelocity", pidVelocitySetpoint);
-
-    double ffOutput = elevatorFeedforward.calculate(pidVelocitySetpoint);
-
-    // SmartDashboard.putNumber("ffOutput", ffOutput);
-
-    // m_motor.set(MathUtil.clamp(-new Joystick(0).getRawAxis(1), -0.25, 0.25));
+    shooter.setElevatorGoal(setPoint);
 
-    if (shooter.isTopLimitReached() || currentPosition >= ShooterConstants.TOP_LIMIT) {
-      System.out.println("stopped!!!!!");
-      shooter.elevatorMotor.set(0);
-    } else {
-      shooter.elevatorMotor.setVoltage(pidOutput + ffOutput);
-    }
   }
 
   // Called once the command ends or is interrupted.
@@ -91,6 +43,6 @@ public class MoveShooterElevatorToSetpointCmd extends Command {
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return profiledPIDController.atGoal();
+    return shooter.isElevatorAtGoal();
   }
 }
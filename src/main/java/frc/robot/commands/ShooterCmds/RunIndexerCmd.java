@@ -20,6 +20,8 @@ public class RunIndexerCmd extends Command {
   // Called when the command is initially scheduled.
   @Override
   public void initialize() {
+    // the note leaving the sensor from here on is a shot
+    shooter.setFeedingShot(true);
   }
 
   // Called every time the scheduler runs while the command is scheduled.
@@ -35,6 +37,7 @@ public class RunIndexerCmd extends Command {
   @Override
   public void end(boolean interrupted) {
     shooter.setIndexMotorSpeed(0);
+    shooter.setFeedingShot(false);
 
   }
 
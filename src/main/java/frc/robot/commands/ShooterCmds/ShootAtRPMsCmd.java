@@ -6,8 +6,6 @@ package frc.robot.commands.ShooterCmds;
 
 import org.littletonrobotics.junction.Logger;
 
-import com.revrobotics.CANSparkMax;
-
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.RobotContainer;
 import frc.robot.subsystems.Shooter;
@@ -46,10 +44,7 @@ public class ShootAtRPMsCmd extends Command {
     // shooter.indexerMotor.set(-0.33);
     // }
 
-    shooter.shooterUpperController.setReference(desiredRPMs,
-        CANSparkMax.ControlType.kVelocity);
-    shooter.shooterLowerController.setReference(desiredRPMs,
-        CANSparkMax.ControlType.kVelocity);
+    shooter.setFlywheelRPMs(desiredRPMs);
 
   }
 
@@ -58,8 +53,7 @@ public class ShootAtRPMsCmd extends Command {
   public void end(boolean interrupted) {
 
     // shooter.indexerMotor.set(0);
-    shooter.shooterUpperMotor.set(0);
-    shooter.shooterLowerMotor.set(0);
+    shooter.stopShooterVelocityMotors();
 
   }
 
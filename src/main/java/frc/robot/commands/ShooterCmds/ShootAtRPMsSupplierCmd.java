@@ -8,8 +8,6 @@ import java.util.function.DoubleSupplier;
 
 import org.littletonrobotics.junction.Logger;
 
-import com.revrobotics.CANSparkMax;
-
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.RobotContainer;
 import frc.robot.subsystems.Shooter;
@@ -48,10 +46,7 @@ public class ShootAtRPMsSupplierCmd extends Command {
     // shooter.indexerMotor.set(-0.33);
     // }
 
-    shooter.shooterUpperController.setReference(desiredRPMs.getAsDouble(),
-        CANSparkMax.ControlType.kVelocity);
-    shooter.shooterLowerController.setReference(desiredRPMs.getAsDouble(),
-        CANSparkMax.ControlType.kVelocity);
+    shooter.setFlywheelRPMs(desiredRPMs.getAsDouble());
 
   }
 
@@ -60,8 +55,7 @@ public class ShootAtRPMsSupplierCmd extends Command {
   public void end(boolean interrupted) {
 
     // shooter.indexerMotor.set(0);
-    shooter.shooterUpperMotor.set(0);
-    shooter.shooterLowerMotor.set(0);
+    shooter.stopShooterVelocityMotors();
 
   }
 
@@ -4,28 +4,21 @@
 
 package frc.robot.commands.ShooterCmds;
 
-import org.apache.commons.math3.util.MathUtils;
 import org.littletonrobotics.junction.Logger;
 
-import edu.wpi.first.math.MathUtil;
-import edu.wpi.first.math.controller.ArmFeedforward;
-import edu.wpi.first.math.controller.PIDController;
-import edu.wpi.first.math.controller.ProfiledPIDController;
-import edu.wpi.first.math.controller.SimpleMotorFeedforward;
-import edu.wpi.first.math.trajectory.TrapezoidProfile;
-import edu.wpi.first.math.trajectory.TrapezoidProfile.State;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.subsystems.Shooter;
 
 public class TiltShooterToSetpointCmd extends Command {
+
+    /**
+     * Tilts the shooter to a setpoint and finishes once it's there
+     * The control loop itself runs in the Shooter, on the roboRIO or the SPARK
+     * MAX depending on the "Tilt Control Mode" chooser
+     */
+
     Shooter shooter;
-    double pidOutout;
     double setpoint;
-    // PIDController tiltController = new PIDController(2, 0, 0.05);
-
-    ProfiledPIDController tiltController = new ProfiledPIDController(0.015,
-            0, 0.0,
-            new TrapezoidProfile.Constraints(180, 135));
 
     /** Creates a new MoveCollectorCmd. */
 
@@ -41,9 +34,7 @@ public class TiltShooterToSetpointCmd extends Command {
     @Override
     public void initialize() {
 
-        tiltController.setTolerance(1);
-        tiltController.reset(shooter.getAbsoluteShooterTiltPosDegrees());
-        // tiltController.enableContinuousInput(-90, 90);
+        shooter.setTiltGoalDegrees(setpoint);
 
     }
 
@@ -51,15 +42,6 @@ public class TiltShooterToSetpointCmd extends Command {
     @Override
     public void execute() {
 
-        // double pidOutout = tiltController.calculate(shooter.getShooterTiltPos(),
-        // setpoint);
-
-        pidOutout = tiltController.calculate(shooter.getAbsoluteShooterTiltPosDegrees(),
-                new State(setpoint, 0));
-
-        shooter.shooterTiltMotor.set(MathUtil.clamp(pidOutout, -1.0, 1.0));
-
-        Logger.recordOutput("tilt pidOutout", pidOutout);
         Logger.recordOutput("tilt setpoint", setpoint);
 
     }
@@ -68,7 +50,7 @@ public class TiltShooterToSetpointCmd extends Command {
     @Override
     public void end(boolean interrupted) {
 
-        shooter.shooterTiltMotor.set(0);
+        shooter.stopShooterTiltMotor();
 
     }
 
@@ -76,6 +58,6 @@ public class TiltShooterToSetpointCmd extends Command {
     @Override
     public boolean isFinished() {
 
-        return tiltController.atGoal();
+        return shooter.isTiltAtGoal();
     }
 }
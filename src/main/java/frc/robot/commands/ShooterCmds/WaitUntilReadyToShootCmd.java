@@ -0,0 +1,63 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands.ShooterCmds;
+
+import java.util.function.BooleanSupplier;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.subsystems.Shooter;
+
+public class WaitUntilReadyToShootCmd extends Command {
+
+  /**
+   * Waits until the shooter is ready to shoot, and the heading is aligned if
+   * given a check for it, so the indexer can run right after
+   * Gives up after maxShotWaitSeconds, the fixed wait shots used to have, so a
+   * shot is never later than it used to be
+   * Logs how long it waited and how much of the old fixed wait that saved
+   */
+
+  Shooter shooter;
+  BooleanSupplier headingAligned;
+
+  private final Timer timer = new Timer();
+
+  public WaitUntilReadyToShootCmd(Shooter shooter) {
+    this(shooter, () -> true);
+  }
+
+  public WaitUntilReadyToShootCmd(Shooter shooter, BooleanSupplier headingAligned) {
+    this.shooter = shooter;
+    this.headingAligned = headingAligned;
+  }
+
+  @Override
+  public void initialize() {
+    timer.restart();
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    double waitSeconds = timer.get();
+
+    Logger.recordOutput("Shooter/ReadyWaitSeconds", waitSeconds);
+    Logger.recordOutput("Shooter/ReadySavedSeconds", ShooterConstants.maxShotWaitSeconds - waitSeconds);
+    Logger.recordOutput("Shooter/ReadyTimedOut", !isReady());
+  }
+
+  @Override
+  public boolean isFinished() {
+    return isReady() || timer.hasElapsed(ShooterConstants.maxShotWaitSeconds);
+  }
+
+  private boolean isReady() {
+    return shooter.isReadyToShoot() && headingAligned.getAsBoolean();
+  }
+
+}
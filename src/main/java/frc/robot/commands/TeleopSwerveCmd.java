@@ -35,6 +35,10 @@ public class TeleopSwerveCmd extends Command {
   private final Supplier<Boolean> strafeOnly;
   private final Supplier<Boolean> slowAll;
 
+  // when set, the robot turns at this rate instead of the rotation stick, see
+  // setRotationOverride()
+  private DoubleSupplier rotationOverride = null;
+
   public TeleopSwerveCmd(
       SwerveBase subsystem,
       DoubleSupplier fwdX,
@@ -64,6 +68,21 @@ public class TeleopSwerveCmd extends Command {
 
   }
 
+  /**
+   * Takes the rotation from somewhere else while the driver keeps translating,
+   * like AimAtSpeakerCmd's heading controller when shooting on the move
+   * Parameters:
+   * rotation in radians per second, counterclockwise positive, called once per
+   * cycle
+   */
+  public void setRotationOverride(DoubleSupplier rotationRadiansPerSecond) {
+    rotationOverride = rotationRadiansPerSecond;
+  }
+
+  public void clearRotationOverride() {
+    rotationOverride = null;
+  }
+
   @Override
   public void execute() {
 
@@ -124,10 +143,13 @@ public class TeleopSwerveCmd extends Command {
 
     }
 
+    double rotationSpeed = rotationOverride != null ? rotationOverride.getAsDouble()
+        : -MathUtil.applyDeadband(rot * 0.5, 0.3, 0.75);
+
     drive.drive(
         -MathUtil.applyDeadband(fwdX, 0.1, 0.75),
         -MathUtil.applyDeadband(fwdY, 0.3, 0.75),
-        -MathUtil.applyDeadband(rot * 0.5, 0.3, 0.75),
+        rotationSpeed,
         fieldOrientedFunction.get());
 
   }
@@ -0,0 +1,152 @@
+package frc.robot.commands.VisionCmds;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants.SwerveBaseConstants;
+import frc.robot.commands.TeleopSwerveCmd;
+import frc.robot.subsystems.SwerveBase;
+import frc.robot.utils.FieldGeometry;
+import frc.robot.utils.ShotSolver;
+
+public class AimAtSpeakerCmd extends Command {
+
+  /**
+   * Turns the shooter side of the robot toward our speaker from the fused pose
+   * Vision only corrects the pose in SwerveBase, so this keeps tracking through
+   * frames with no tags
+   * The heading to the speaker is fed to a profiled controller along with how
+   * fast it's changing, from the robot's velocity over the pose history, so the
+   * robot keeps up while it's moving
+   * Given a ShotSolver it aims at the solver's virtual target instead, so the
+   * note's sideways velocity is taken out while shooting on the move
+   *
+   * Given the TeleopSwerveCmd too, it doesn't take the drivetrain. It only
+   * replaces the driver's rotation while the driver keeps translating
+   */
+
+  private final SwerveBase swerveBase;
+  private final ShotSolver shotSolver;
+  private final TeleopSwerveCmd teleopSwerveCmd;
+
+  private final ProfiledPIDController headingController = new ProfiledPIDController(
+      SwerveBaseConstants.aimkP, 0, SwerveBaseConstants.aimkD,
+      new TrapezoidProfile.Constraints(SwerveBaseConstants.maxAngularVelocityRps,
+          SwerveBaseConstants.maxAngularAccelerationRpsSq));
+
+  private final double[] fieldVelocity = new double[2];
+
+  public AimAtSpeakerCmd(SwerveBase swerveBase) {
+    this(swerveBase, null);
+  }
+
+  public AimAtSpeakerCmd(SwerveBase swerveBase, ShotSolver shotSolver) {
+    this(swerveBase, shotSolver, null);
+  }
+
+  /**
+   * Parameters:
+   * the drivetrain
+   * solver to aim at the virtual target of, or null for the speaker itself
+   * the running teleop command to take the rotation of, or null to take the
+   * drivetrain and hold still while turning
+   */
+  public AimAtSpeakerCmd(SwerveBase swerveBase, ShotSolver shotSolver, TeleopSwerveCmd teleopSwerveCmd) {
+    this.swerveBase = swerveBase;
+    this.shotSolver = shotSolver;
+    this.teleopSwerveCmd = teleopSwerveCmd;
+
+    headingController.enableContinuousInput(-Math.PI, Math.PI);
+    headingController.setTolerance(SwerveBaseConstants.aimTolerance);
+
+    if (teleopSwerveCmd == null) {
+      addRequirements(swerveBase);
+    }
+  }
+
+  @Override
+  public void initialize() {
+    // start the profile from where the robot is and how fast it's turning
+    headingController.reset(swerveBase.getPose().getRotation().getRadians(),
+        swerveBase.getRobotRelativeSpeeds().omegaRadiansPerSecond);
+
+    if (teleopSwerveCmd != null) {
+      teleopSwerveCmd.setRotationOverride(this::calculateRotationSpeed);
+    }
+  }
+
+  @Override
+  public void execute() {
+    // the teleop command asks for the rotation itself, once per cycle
+    if (teleopSwerveCmd == null) {
+      swerveBase.drive(0, 0, calculateRotationSpeed(), true);
+    }
+  }
+
+  // advances the heading controller, so only called once per cycle
+  private double calculateRotationSpeed() {
+    var pose = swerveBase.getPose();
+    double x = pose.getX();
+    double y = pose.getY();
+    double heading = pose.getRotation().getRadians();
+
+    double targetX;
+    double targetY;
+    if (shotSolver != null) {
+      targetX = shotSolver.getVirtualTargetX();
+      targetY = shotSolver.getVirtualTargetY();
+    } else {
+      targetX = FieldGeometry.getX(FieldGeometry.Target.SPEAKER);
+      targetY = FieldGeometry.getY(FieldGeometry.Target.SPEAKER);
+    }
+
+    double goalHeading = MathUtil.angleModulus(
+        Math.atan2(targetY - y, targetX - x) + SwerveBaseConstants.aimHeadingOffset);
+
+    // how fast the bearing to the target is turning as the robot drives,
+    // (r x v) / |r|^2 with r from the robot to the target
+    double goalVelocity = 0;
+    if (swerveBase.getFieldVelocity(fieldVelocity)) {
+      double vx = fieldVelocity[0];
+      double vy = fieldVelocity[1];
+      double rx = targetX - x;
+      double ry = targetY - y;
+      double distanceSquared = rx * rx + ry * ry;
+      if (distanceSquared > 1E-6) {
+        goalVelocity = -(rx * vy - ry * vx) / distanceSquared;
+      }
+    }
+
+    double rotationSpeed = headingController.calculate(heading,
+        new TrapezoidProfile.State(goalHeading, goalVelocity))
+        + headingController.getSetpoint().velocity;
+
+    Logger.recordOutput("Aim/GoalHeading", goalHeading);
+    Logger.recordOutput("Aim/HeadingError", headingController.getPositionError());
+
+    return rotationSpeed;
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    if (teleopSwerveCmd != null) {
+      teleopSwerveCmd.clearRotationOverride();
+    } else {
+      swerveBase.drive(0, 0, 0, true);
+    }
+  }
+
+  // lines up for as long as it's held
+  @Override
+  public boolean isFinished() {
+    return false;
+  }
+
+  public boolean isAimed() {
+    return headingController.atGoal();
+  }
+
+}
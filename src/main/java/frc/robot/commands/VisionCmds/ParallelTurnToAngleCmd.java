@@ -53,7 +53,7 @@ public class ParallelTurnToAngleCmd extends Command {
 
     // Vision-alignment mode
     // Query the latest result from PhotonVision
-    var result = vision.getCamera().getLatestResult();
+    var result = vision.getLatestResult();
 
     hasTarget = result.hasTargets();
 
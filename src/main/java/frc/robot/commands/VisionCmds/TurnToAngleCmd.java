@@ -52,7 +52,7 @@ public class TurnToAngleCmd extends Command {
 
     // Vision-alignment mode
     // Query the latest result from PhotonVision
-    var result = vision.getCamera().getLatestResult();
+    var result = vision.getLatestResult();
 
     hasTarget = result.hasTargets();
 
@@ -8,13 +8,13 @@ import org.littletonrobotics.junction.Logger;
 
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.CANSparkBase.IdleMode;
-import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj.DutyCycleEncoder;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.CollectorConstants;
 import frc.robot.Constants.DIOConstants;
+import frc.robot.utils.NoteSensor;
 import com.revrobotics.CANSparkLowLevel.MotorType;
 
 public class Collector extends SubsystemBase {
@@ -24,7 +24,7 @@ public class Collector extends SubsystemBase {
 
     public DutyCycleEncoder tiltThruBore;
 
-    public DigitalInput collectorNoteSensor = new DigitalInput(DIOConstants.collectorOpticalDIO);
+    public NoteSensor collectorNoteSensor = new NoteSensor("Collector/NoteSensor", DIOConstants.collectorOpticalDIO);
 
     /** Creates a new Collector. */
     public Collector() {
@@ -43,6 +43,8 @@ public class Collector extends SubsystemBase {
     @Override
     public void periodic() {
 
+        collectorNoteSensor.update();
+
         Logger.recordOutput("collecter note sensor", isNotePresent());
 
         SmartDashboard.putBoolean("HAS NOTE?", isNotePresent());
@@ -80,7 +82,16 @@ public class Collector extends SubsystemBase {
     }
 
     public boolean isNotePresent() {
-        return !collectorNoteSensor.get();
+        return collectorNoteSensor.isNotePresent();
+
+    }
+
+    // stops the roller from the sensor's interrupt as soon as a note arrives
+    public void armNoteStop() {
+        collectorNoteSensor.arm(rollerMotor::stopMotor);
+    }
 
+    public void disarmNoteStop() {
+        collectorNoteSensor.disarm();
     }
 }
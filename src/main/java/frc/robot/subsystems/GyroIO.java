@@ -0,0 +1,64 @@
+package frc.robot.subsystems;
+
+import org.littletonrobotics.junction.AutoLog;
+
+import edu.wpi.first.math.geometry.Twist2d;
+
+public interface GyroIO {
+
+  /**
+   * Hardware layer for the drivetrain gyro
+   * Yaw is counterclockwise positive, same as SwerveBase.getHeading()
+   */
+
+  @AutoLog
+  public static class GyroIOInputs {
+    public boolean connected = false;
+    public boolean calibrating = false;
+
+    // connected, done calibrating and zeroed once, the heading can be trusted
+    public boolean ready = false;
+
+    public double yawPositionRad = 0.0;
+    public double yawVelocityRadPerSec = 0.0;
+
+    // FPGA time the newest yaw sample was measured, seconds
+    public double yawTimestampSeconds = 0.0;
+
+    // linear acceleration with gravity removed, m/s^2
+    public double accelXMetersPerSecSq = 0.0;
+    public double accelYMetersPerSecSq = 0.0;
+  }
+
+  /** Reads every gyro signal into the inputs. */
+  public default void updateInputs(GyroIOInputs inputs) {
+  }
+
+  /**
+   * Reads the yaw straight from the hardware, for the odometry thread
+   */
+  public default double readYawRad() {
+    return 0.0;
+  }
+
+  /**
+   * Reads the yaw at an FPGA timestamp, interpolated between the gyro's own
+   * timestamped samples, for the odometry thread
+   */
+  public default double readYawRadAt(double timestampSeconds) {
+    return readYawRad();
+  }
+
+  public default void zeroYaw() {
+  }
+
+  /**
+   * Advances the simulated gyro, called from simulationPeriodic()
+   * Parameters:
+   * how the robot moved since the last call, robot relative
+   * time since the last call, seconds
+   */
+  public default void updateSim(Twist2d robotTwist, double dtSeconds) {
+  }
+
+}
@@ -0,0 +1,223 @@
+package frc.robot.subsystems;
+
+import com.kauailabs.navx.AHRSProtocol.AHRSUpdateBase;
+import com.kauailabs.navx.frc.AHRS;
+import com.kauailabs.navx.frc.ITimestampedDataSubscriber;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.SPI;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants.SwerveBaseConstants;
+
+public class GyroIONavX implements GyroIO, ITimestampedDataSubscriber {
+
+  /**
+   * navX-MXP on the roboRIO's SPI port
+   * Every update the navX sends is pushed to us through its timestamped callback
+   * and kept in a short history, so the odometry thread can look up the yaw at
+   * the time it sampled the encoders instead of whatever was read last
+   *
+   * The navX reports clockwise positive degrees, history is kept counterclockwise
+   * positive and unwrapped, in radians
+   * Zeroing is done here with an offset, so it applies to the callback data the
+   * same way it does to getYaw()
+   */
+
+  // ~1.3 seconds of samples at the odometry rate
+  private static final int historySize = 256;
+
+  // how far past the newest sample the yaw is extrapolated with the yaw rate
+  private static final double maxExtrapolationSeconds = 0.05;
+
+  private final AHRS navX;
+
+  // ring buffer of navX samples, oldest at historyStart. Guarded by this
+  private final double[] historyTimestamps = new double[historySize];
+  private final double[] historyYawRad = new double[historySize];
+  private final double[] historyYawRateRadPerSec = new double[historySize];
+  private int historyStart = 0;
+  private int historyCount = 0;
+
+  // smallest difference between the FPGA time a sample arrived and its navX
+  // timestamp, which maps navX time onto FPGA time with the least transport
+  // latency seen so far
+  private double sensorToFpgaOffsetSeconds = Double.POSITIVE_INFINITY;
+  private double lastSensorSeconds = 0.0;
+
+  private double lastRawYawRad = 0.0;
+  private double unwrappedYawRad = 0.0;
+  private double yawOffsetRad = 0.0;
+  private boolean zeroRequested = false;
+
+  // the navX is zeroed once, the first cycle it's connected and done calibrating,
+  // and only reported ready once the callback has applied that zero
+  private boolean initialZeroRequested = false;
+  private boolean initialZeroApplied = false;
+
+  public GyroIONavX() {
+
+    navX = new AHRS(SPI.Port.kMXP, (byte) SwerveBaseConstants.odometryFrequencyHz);
+    navX.registerCallback(this, null);
+
+  }
+
+  // runs on the navX's IO thread every time a new update arrives
+  @Override
+  public void timestampedDataReceived(long systemTimestamp, long sensorTimestamp, AHRSUpdateBase sensorData,
+      Object context) {
+
+    double receivedSeconds = Timer.getFPGATimestamp();
+    double sensorSeconds = sensorTimestamp / 1000.0;
+    double rawYawRad = Math.toRadians(-sensorData.yaw);
+
+    synchronized (this) {
+
+      // the navX's clock starts over if it browns out
+      if (sensorSeconds < lastSensorSeconds) {
+        sensorToFpgaOffsetSeconds = Double.POSITIVE_INFINITY;
+      }
+      lastSensorSeconds = sensorSeconds;
+
+      sensorToFpgaOffsetSeconds = Math.min(sensorToFpgaOffsetSeconds, receivedSeconds - sensorSeconds);
+      double timestampSeconds = sensorSeconds + sensorToFpgaOffsetSeconds;
+
+      // the navX wraps at +-180, keep the history continuous so it can be
+      // interpolated
+      if (historyCount == 0) {
+        unwrappedYawRad = rawYawRad;
+      } else {
+        unwrappedYawRad += MathUtil.angleModulus(rawYawRad - lastRawYawRad);
+      }
+      lastRawYawRad = rawYawRad;
+
+      // shift the history along with the zero so lookups just before it still
+      // line up with the samples after it
+      if (zeroRequested) {
+        double offsetChangeRad = unwrappedYawRad - yawOffsetRad;
+        for (int i = 0; i < historyCount; i++) {
+          historyYawRad[(historyStart + i) % historySize] -= offsetChangeRad;
+        }
+        yawOffsetRad = unwrappedYawRad;
+        zeroRequested = false;
+        initialZeroApplied = true;
+      }
+
+      double yawRad = unwrappedYawRad - yawOffsetRad;
+
+      double yawRateRadPerSec = 0.0;
+      if (historyCount > 0) {
+        int newest = (historyStart + historyCount - 1) % historySize;
+        double dt = timestampSeconds - historyTimestamps[newest];
+        // navX timestamps only have ms resolution
+        if (dt > 1E-4) {
+          yawRateRadPerSec = (yawRad - historyYawRad[newest]) / dt;
+        } else {
+          yawRateRadPerSec = historyYawRateRadPerSec[newest];
+        }
+      }
+
+      int index;
+      if (historyCount < historySize) {
+        index = (historyStart + historyCount) % historySize;
+        historyCount++;
+      } else {
+        index = historyStart;
+        historyStart = (historyStart + 1) % historySize;
+      }
+      historyTimestamps[index] = timestampSeconds;
+      historyYawRad[index] = yawRad;
+      historyYawRateRadPerSec[index] = yawRateRadPerSec;
+
+    }
+
+  }
+
+  @Override
+  public void updateInputs(GyroIOInputs inputs) {
+
+    inputs.connected = navX.isConnected();
+    inputs.calibrating = navX.isCalibrating();
+
+    if (!initialZeroRequested && inputs.connected && !inputs.calibrating) {
+      initialZeroRequested = true;
+      zeroYaw();
+    }
+
+    // world linear acceleration is already gravity compensated, in g
+    inputs.accelXMetersPerSecSq = navX.getWorldLinearAccelX() * 9.80665;
+    inputs.accelYMetersPerSecSq = navX.getWorldLinearAccelY() * 9.80665;
+
+    synchronized (this) {
+      inputs.ready = initialZeroApplied;
+      if (historyCount > 0) {
+        int newest = (historyStart + historyCount - 1) % historySize;
+        inputs.yawPositionRad = historyYawRad[newest];
+        inputs.yawVelocityRadPerSec = historyYawRateRadPerSec[newest];
+        inputs.yawTimestampSeconds = historyTimestamps[newest];
+      }
+    }
+
+  }
+
+  @Override
+  public synchronized double readYawRad() {
+
+    if (historyCount == 0) {
+      return 0.0;
+    }
+    return historyYawRad[(historyStart + historyCount - 1) % historySize];
+
+  }
+
+  @Override
+  public synchronized double readYawRadAt(double timestampSeconds) {
+
+    if (historyCount == 0) {
+      return 0.0;
+    }
+
+    int oldest = historyStart;
+    int newest = (historyStart + historyCount - 1) % historySize;
+
+    if (timestampSeconds <= historyTimestamps[oldest]) {
+      return historyYawRad[oldest];
+    }
+
+    // newer than anything the navX has sent, carry the newest sample forward at
+    // its yaw rate
+    if (timestampSeconds >= historyTimestamps[newest]) {
+      double dt = Math.min(timestampSeconds - historyTimestamps[newest], maxExtrapolationSeconds);
+      return historyYawRad[newest] + historyYawRateRadPerSec[newest] * dt;
+    }
+
+    // binary search for the last sample at or before the timestamp
+    int low = 0;
+    int high = historyCount - 1;
+    while (low < high) {
+      int mid = (low + high + 1) / 2;
+      if (historyTimestamps[(historyStart + mid) % historySize] <= timestampSeconds) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+
+    int before = (historyStart + low) % historySize;
+    int after = (before + 1) % historySize;
+    double span = historyTimestamps[after] - historyTimestamps[before];
+    if (span <= 0) {
+      return historyYawRad[before];
+    }
+
+    double t = (timestampSeconds - historyTimestamps[before]) / span;
+    return historyYawRad[before] + (historyYawRad[after] - historyYawRad[before]) * t;
+
+  }
+
+  // takes effect on the next navX update
+  @Override
+  public synchronized void zeroYaw() {
+    zeroRequested = true;
+  }
+
+}
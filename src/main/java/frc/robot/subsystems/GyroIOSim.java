@@ -0,0 +1,54 @@
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.geometry.Twist2d;
+
+public class GyroIOSim implements GyroIO {
+
+  /**
+   * Simulated gyro, integrated from the simulated modules by SwerveBase
+   */
+
+  // written on the main thread, read by the odometry thread
+  private volatile double yawRad = 0.0;
+  private double yawVelocityRadPerSec = 0.0;
+  private double vxMetersPerSec = 0.0;
+  private double vyMetersPerSec = 0.0;
+  private double accelXMetersPerSecSq = 0.0;
+  private double accelYMetersPerSecSq = 0.0;
+
+  @Override
+  public void updateInputs(GyroIOInputs inputs) {
+
+    inputs.connected = true;
+    inputs.ready = true;
+    inputs.yawPositionRad = yawRad;
+    inputs.yawVelocityRadPerSec = yawVelocityRadPerSec;
+    inputs.accelXMetersPerSecSq = accelXMetersPerSecSq;
+    inputs.accelYMetersPerSecSq = accelYMetersPerSecSq;
+
+  }
+
+  @Override
+  public double readYawRad() {
+    return yawRad;
+  }
+
+  @Override
+  public void zeroYaw() {
+    yawRad = 0.0;
+  }
+
+  @Override
+  public void updateSim(Twist2d robotTwist, double dtSeconds) {
+    yawRad += robotTwist.dtheta;
+    yawVelocityRadPerSec = robotTwist.dtheta / dtSeconds;
+
+    double vx = robotTwist.dx / dtSeconds;
+    double vy = robotTwist.dy / dtSeconds;
+    accelXMetersPerSecSq = (vx - vxMetersPerSec) / dtSeconds;
+    accelYMetersPerSecSq = (vy - vyMetersPerSec) / dtSeconds;
+    vxMetersPerSec = vx;
+    vyMetersPerSec = vy;
+  }
+
+}
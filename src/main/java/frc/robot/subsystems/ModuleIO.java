@@ -0,0 +1,86 @@
+package frc.robot.subsystems;
+
+import org.littletonrobotics.junction.AutoLog;
+
+public interface ModuleIO {
+
+  /**
+   * Hardware layer for a swerve module
+   * Every signal SwerveModule uses is read once per cycle into ModuleIOInputs so
+   * that all of the module math runs off the same snapshot and can be replayed
+   * from a log
+   */
+
+  @AutoLog
+  public static class ModuleIOInputs {
+    // same sign and units as the NEO's integrated encoder, meters and m/s
+    public double drivePositionMeters = 0.0;
+    public double driveVelocityMetersPerSec = 0.0;
+
+    // unwrapped integrated NEO angle, radians
+    public double turnIntegratedPositionRad = 0.0;
+
+    // CANCoder angle minus the measured offset, radians
+    public double turnAbsolutePositionRad = 0.0;
+  }
+
+  /** Reads every module signal into the inputs. */
+  public default void updateInputs(ModuleIOInputs inputs) {
+  }
+
+  /**
+   * Reads the drive position straight from the hardware, for the odometry thread
+   */
+  public default double readDrivePositionMeters() {
+    return 0.0;
+  }
+
+  /**
+   * Reads the unwrapped turn position straight from the hardware, for the
+   * odometry thread
+   */
+  public default double readTurnPositionRad() {
+    return 0.0;
+  }
+
+  public default void setDriveVoltage(double volts) {
+  }
+
+  // percent output, -1 to 1
+  public default void setTurnOutput(double output) {
+  }
+
+  /**
+   * Runs the drive velocity loop on the motor controller
+   * Parameters:
+   * velocity setpoint in m/s, same sign as the drive encoder
+   * feedforward in volts, added to the controller's output
+   */
+  public default void setDriveVelocity(double velocityMetersPerSec, double feedforwardVolts) {
+  }
+
+  // runs the steer position loop on the motor controller, radians
+  public default void setTurnAngle(double angleRad) {
+  }
+
+  public default void setDriveInverted(boolean inverted) {
+  }
+
+  public default void setTurnInverted(boolean inverted) {
+  }
+
+  // seeds the integrated turn encoder, radians
+  public default void setTurnPosition(double positionRad) {
+  }
+
+  public default void resetDrivePosition() {
+  }
+
+  public default void stop() {
+  }
+
+  // advances a simulated module, called from simulationPeriodic()
+  public default void updateSim(double dtSeconds) {
+  }
+
+}
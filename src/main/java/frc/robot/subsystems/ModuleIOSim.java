@@ -0,0 +1,192 @@
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.robot.Constants.SwerveBaseConstants;
+import frc.robot.Constants.SwerveModuleConstants;
+
+public class ModuleIOSim implements ModuleIO {
+
+  /**
+   * Simulated swerve module: a NEO through the real drive and steer gear ratios
+   * on DCMotorSims
+   * The drive motor loses driveFF's kS to friction, so the feedforward tuned on
+   * the robot behaves the same here
+   * The SPARK MAX onboard loops are emulated at 1 kHz inside updateSim()
+   *
+   * Inversion is ignored, on a brushless SPARK MAX it flips the encoder along
+   * with the motor so the module's own frame doesn't change
+   */
+
+  private static final double busVoltage = 12.0;
+
+  // the SPARK MAX runs its onboard PID every 1ms
+  private static final double onboardPeriodSeconds = 0.001;
+
+  // moment of inertia seen at the wheel and at the module's steering axis, kg m^2
+  private static final double driveMomentOfInertia = 0.025;
+  private static final double turnMomentOfInertia = 0.004;
+
+  private final DCMotorSim driveSim = new DCMotorSim(DCMotor.getNEO(1), SwerveBaseConstants.driveGearRatio,
+      driveMomentOfInertia);
+  private final DCMotorSim turnSim = new DCMotorSim(DCMotor.getNEO(1), SwerveBaseConstants.angleGearRatio,
+      turnMomentOfInertia);
+
+  // read by the odometry thread
+  private volatile double drivePositionMeters = 0.0;
+  private volatile double turnPositionRad = 0.0;
+
+  // difference between the simulated encoders and the mechanism, changed by
+  // resetDrivePosition() and setTurnPosition()
+  private double driveEncoderOffsetMeters = 0.0;
+  private double turnEncoderOffsetRad = 0.0;
+
+  private double driveAppliedVolts = 0.0;
+  private double turnAppliedVolts = 0.0;
+
+  private boolean driveOnboardClosedLoop = false;
+  private boolean turnOnboardClosedLoop = false;
+  private double driveVelocitySetpoint = 0.0;
+  private double driveFeedforwardVolts = 0.0;
+  private double turnAngleSetpoint = 0.0;
+  private double lastTurnError = 0.0;
+
+  public ModuleIOSim() {
+    // the wheels start at a random angle like they do on the robot, the simulated
+    // CANCoder is already offset
+    turnSim.setState(Math.random() * 2 * Math.PI, 0.0);
+    turnPositionRad = getTurnPositionRad();
+  }
+
+  @Override
+  public void updateSim(double dtSeconds) {
+
+    int steps = Math.max(1, (int) Math.round(dtSeconds / onboardPeriodSeconds));
+    double stepSeconds = dtSeconds / steps;
+
+    for (int i = 0; i < steps; i++) {
+
+      double driveVelocity = getDriveVelocityMetersPerSec();
+
+      if (driveOnboardClosedLoop) {
+        driveAppliedVolts = driveFeedforwardVolts
+            + SwerveModuleConstants.onboardDrivekP * (driveVelocitySetpoint - driveVelocity) * busVoltage;
+      }
+
+      if (turnOnboardClosedLoop) {
+        double turnError = MathUtil.angleModulus(turnAngleSetpoint - getTurnPositionRad());
+        turnAppliedVolts = (SwerveModuleConstants.onboardRotationkP * turnError
+            + SwerveModuleConstants.onboardRotationkD * (turnError - lastTurnError)) * busVoltage;
+        lastTurnError = turnError;
+      }
+
+      driveAppliedVolts = MathUtil.clamp(driveAppliedVolts, -busVoltage, busVoltage);
+      turnAppliedVolts = MathUtil.clamp(turnAppliedVolts, -busVoltage, busVoltage);
+
+      driveSim.setInputVoltage(applyFriction(driveAppliedVolts, driveVelocity));
+      turnSim.setInputVoltage(turnAppliedVolts);
+
+      driveSim.update(stepSeconds);
+      turnSim.update(stepSeconds);
+
+    }
+
+    drivePositionMeters = driveSim.getAngularPositionRad() * (SwerveBaseConstants.wheelDiameter / 2.0)
+        - driveEncoderOffsetMeters;
+    turnPositionRad = getTurnPositionRad();
+
+  }
+
+  // takes driveFF's kS off of the applied voltage, nothing moves until it's
+  // overcome
+  private static double applyFriction(double volts, double velocityMetersPerSec) {
+
+    double kS = SwerveModuleConstants.driveFF.ks;
+
+    if (Math.abs(velocityMetersPerSec) > 1E-3) {
+      return volts - Math.copySign(kS, velocityMetersPerSec);
+    }
+    if (Math.abs(volts) <= kS) {
+      return 0.0;
+    }
+    return volts - Math.copySign(kS, volts);
+
+  }
+
+  private double getDriveVelocityMetersPerSec() {
+    return driveSim.getAngularVelocityRadPerSec() * (SwerveBaseConstants.wheelDiameter / 2.0);
+  }
+
+  private double getTurnPositionRad() {
+    return turnSim.getAngularPositionRad() - turnEncoderOffsetRad;
+  }
+
+  @Override
+  public void updateInputs(ModuleIOInputs inputs) {
+
+    inputs.drivePositionMeters = drivePositionMeters;
+    inputs.driveVelocityMetersPerSec = getDriveVelocityMetersPerSec();
+
+    inputs.turnIntegratedPositionRad = turnPositionRad;
+    inputs.turnAbsolutePositionRad = MathUtil.inputModulus(turnSim.getAngularPositionRad(), 0, 2 * Math.PI);
+
+  }
+
+  @Override
+  public double readDrivePositionMeters() {
+    return drivePositionMeters;
+  }
+
+  @Override
+  public double readTurnPositionRad() {
+    return turnPositionRad;
+  }
+
+  @Override
+  public void setDriveVoltage(double volts) {
+    driveOnboardClosedLoop = false;
+    driveAppliedVolts = volts;
+  }
+
+  @Override
+  public void setTurnOutput(double output) {
+    turnOnboardClosedLoop = false;
+    turnAppliedVolts = output * busVoltage;
+  }
+
+  @Override
+  public void setDriveVelocity(double velocityMetersPerSec, double feedforwardVolts) {
+    driveOnboardClosedLoop = true;
+    driveVelocitySetpoint = velocityMetersPerSec;
+    driveFeedforwardVolts = feedforwardVolts;
+  }
+
+  @Override
+  public void setTurnAngle(double angleRad) {
+    if (!turnOnboardClosedLoop) {
+      lastTurnError = MathUtil.angleModulus(angleRad - getTurnPositionRad());
+    }
+    turnOnboardClosedLoop = true;
+    turnAngleSetpoint = angleRad;
+  }
+
+  @Override
+  public void setTurnPosition(double positionRad) {
+    turnEncoderOffsetRad = turnSim.getAngularPositionRad() - positionRad;
+    turnPositionRad = positionRad;
+  }
+
+  @Override
+  public void resetDrivePosition() {
+    driveEncoderOffsetMeters = driveSim.getAngularPositionRad() * (SwerveBaseConstants.wheelDiameter / 2.0);
+    drivePositionMeters = 0.0;
+  }
+
+  @Override
+  public void stop() {
+    setDriveVoltage(0.0);
+    setTurnOutput(0.0);
+  }
+
+}
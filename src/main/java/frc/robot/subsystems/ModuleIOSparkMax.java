@@ -0,0 +1,192 @@
+package frc.robot.subsystems;
+
+import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.configs.CANcoderConfiguration;
+import com.ctre.phoenix6.hardware.CANcoder;
+import com.ctre.phoenix6.signals.AbsoluteSensorRangeValue;
+import com.ctre.phoenix6.signals.SensorDirectionValue;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkPIDController;
+import com.revrobotics.CANSparkBase.ControlType;
+import com.revrobotics.CANSparkBase.IdleMode;
+import com.revrobotics.CANSparkLowLevel.MotorType;
+import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
+
+import frc.robot.Constants.SwerveBaseConstants;
+import frc.robot.Constants.SwerveModuleConstants;
+
+public class ModuleIOSparkMax implements ModuleIO {
+
+  /**
+   * Swerve module hardware: NEO drive and rotation motors on SPARK MAXs and an
+   * external CANCoder for the absolute angle
+   */
+
+  private final CANSparkMax driveMotor;
+  private final CANSparkMax rotationMotor;
+
+  private final RelativeEncoder driveEncoder;
+  private final RelativeEncoder rotationEncoder;
+
+  private final SparkPIDController driveController;
+  private final SparkPIDController rotationController;
+
+  private final CANcoder canCoder;
+  private final StatusSignal<Double> canCoderAbsolutePosition;
+
+  // absolute offset for the CANCoder so that the wheels can be aligned when the
+  // robot is turned on
+  private final double offsetRadians;
+
+  public ModuleIOSparkMax(int driveMotorId,
+      int rotationMotorId,
+      int canCoderId,
+      double measuredOffsetRadians) {
+
+    driveMotor = new CANSparkMax(driveMotorId, MotorType.kBrushless);
+    rotationMotor = new CANSparkMax(rotationMotorId, MotorType.kBrushless);
+
+    driveEncoder = driveMotor.getEncoder();
+    rotationEncoder = rotationMotor.getEncoder();
+
+    canCoder = new CANcoder(canCoderId);
+    canCoderAbsolutePosition = canCoder.getAbsolutePosition();
+
+    offsetRadians = measuredOffsetRadians;
+
+    driveMotor.setIdleMode(IdleMode.kBrake);
+    rotationMotor.setIdleMode(IdleMode.kBrake);
+
+    // set the output of the drive encoder to be in radians for linear measurement
+    // driveEncoder.setPositionConversionFactor(
+    // 2.0 * Math.PI / Swerve.driveGearRatio);
+    driveEncoder.setPositionConversionFactor(SwerveModuleConstants.driveEncoderPositionConversionFactor);
+
+    // set the output of the drive encoder to be in radians per second for velocity
+    // measurement
+    // driveEncoder.setVelocityConversionFactor(
+    // 2.0 * Math.PI / 60 / Swerve.driveGearRatio);
+    driveEncoder.setVelocityConversionFactor(SwerveModuleConstants.driveEncoderPositionConversionFactor / 60.0);
+
+    // set the output of the rotation encoder to be in radians
+    // rotationEncoder.setPositionConversionFactor(2 * Math.PI /
+    // Swerve.angleGearRatio);
+    rotationEncoder.setPositionConversionFactor(SwerveModuleConstants.rotationEncoderPositionConversionFactor);
+
+    // onboard velocity loop, in m/s because of the conversion factor above. driveFF
+    // comes in as arbitrary feedforward, so the controller's own kFF stays 0
+    driveController = driveMotor.getPIDController();
+    driveController.setP(SwerveModuleConstants.onboardDrivekP);
+    driveController.setI(0);
+    driveController.setD(0);
+    driveController.setFF(0);
+    driveController.setOutputRange(-1, 1);
+
+    // onboard position loop, in radians. Wrapping gives it the same continuous
+    // input the roboRIO PID has
+    rotationController = rotationMotor.getPIDController();
+    rotationController.setP(SwerveModuleConstants.onboardRotationkP);
+    rotationController.setI(0);
+    rotationController.setD(SwerveModuleConstants.onboardRotationkD);
+    rotationController.setFF(0);
+    rotationController.setOutputRange(-1, 1);
+    rotationController.setPositionPIDWrappingEnabled(true);
+    rotationController.setPositionPIDWrappingMinInput(0);
+    rotationController.setPositionPIDWrappingMaxInput(2 * Math.PI);
+
+    // configure the CANCoder to output in unsigned (wrap around from 360 to 0
+    // degrees)
+    // canCoder.configAbsoluteSensorRange(AbsoluteSensorRange.Unsigned_0_to_360);
+    CANcoderConfiguration config = new CANcoderConfiguration();
+    config.MagnetSensor.AbsoluteSensorRange = AbsoluteSensorRangeValue.Unsigned_0To1;
+    config.MagnetSensor.SensorDirection = SensorDirectionValue.CounterClockwise_Positive;
+    canCoder.getConfigurator().apply(config);
+
+    // send the encoder positions (status frame 2) as often as the odometry thread
+    // samples them, instead of the default 20ms
+    int odometryPeriodMs = (int) (1000.0 / SwerveBaseConstants.odometryFrequencyHz);
+    driveMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus2, odometryPeriodMs);
+    rotationMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus2, odometryPeriodMs);
+
+    driveMotor.burnFlash();
+    rotationMotor.burnFlash();
+
+  }
+
+  @Override
+  public void updateInputs(ModuleIOInputs inputs) {
+
+    inputs.drivePositionMeters = driveEncoder.getPosition();
+    inputs.driveVelocityMetersPerSec = driveEncoder.getVelocity();
+
+    inputs.turnIntegratedPositionRad = rotationEncoder.getPosition();
+
+    // double unsignedAngle =
+    // (Units.degreesToRadians(canCoder.getAbsolutePosition()) -
+    // offset.getRadians())
+    // % (2 * Math.PI);
+    inputs.turnAbsolutePositionRad = (Math.PI * 2 *
+        canCoderAbsolutePosition.refresh().getValueAsDouble()) - offsetRadians
+            % (2 * Math.PI);
+
+  }
+
+  @Override
+  public double readDrivePositionMeters() {
+    return driveEncoder.getPosition();
+  }
+
+  @Override
+  public double readTurnPositionRad() {
+    return rotationEncoder.getPosition();
+  }
+
+  @Override
+  public void setDriveVoltage(double volts) {
+    driveMotor.setVoltage(volts);
+  }
+
+  @Override
+  public void setTurnOutput(double output) {
+    rotationMotor.set(output);
+  }
+
+  @Override
+  public void setDriveVelocity(double velocityMetersPerSec, double feedforwardVolts) {
+    driveController.setReference(velocityMetersPerSec, ControlType.kVelocity, 0, feedforwardVolts,
+        SparkPIDController.ArbFFUnits.kVoltage);
+  }
+
+  @Override
+  public void setTurnAngle(double angleRad) {
+    rotationController.setReference(angleRad, ControlType.kPosition);
+  }
+
+  @Override
+  public void setDriveInverted(boolean inverted) {
+    driveMotor.setInverted(inverted);
+  }
+
+  @Override
+  public void setTurnInverted(boolean inverted) {
+    rotationMotor.setInverted(inverted);
+  }
+
+  @Override
+  public void setTurnPosition(double positionRad) {
+    rotationEncoder.setPosition(positionRad);
+  }
+
+  @Override
+  public void resetDrivePosition() {
+    driveEncoder.setPosition(0.0);
+  }
+
+  @Override
+  public void stop() {
+    driveMotor.set(0);
+    rotationMotor.set(0);
+  }
+
+}
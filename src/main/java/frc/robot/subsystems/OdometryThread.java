@@ -0,0 +1,225 @@
+package frc.robot.subsystems;
+
+import java.util.function.DoubleUnaryOperator;
+
+import org.littletonrobotics.junction.AutoLog;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants.SwerveBaseConstants;
+
+public class OdometryThread {
+
+  /**
+   * Samples the drive encoders, integrated steer encoders and gyro on its own
+   * thread at SwerveBaseConstants.odometryFrequencyHz instead of once every 20ms
+   * Each sample is timestamped and written into a preallocated ring that
+   * SwerveBase drains into the pose estimator every periodic()
+   * The drained samples are logged as inputs so odometry can be replayed
+   *
+   * The ring is single producer, single consumer and lock free. Only the
+   * notifier thread writes samples and moves tail, only the main loop drains
+   * them and moves head, and the volatile write of each index is what hands the
+   * slots over. When it's full the new sample is dropped, the notifier can't move
+   * head to drop the oldest
+   *
+   * Every reset bumps a generation counter, and each slot records the generation
+   * it was read under. The main loop throws away any slot from an older
+   * generation when it drains, so nothing read before a reset gets through.
+   * After the drive encoders are reset, samples are also dropped until every
+   * module reads back near zero, since the reset reaches the SPARK MAXs a few
+   * status frames later
+   */
+
+  /**
+   * Every sample drained in one cycle, oldest first
+   * Module values are flattened as [sample * module count + module ID]
+   * Distances use the same sign convention as SwerveBase.getModulePositions()
+   */
+  @AutoLog
+  public static class OdometryThreadInputs {
+    public double[] timestamps = new double[] {};
+    public double[] headingsRad = new double[] {};
+    public double[] driveDistancesMeters = new double[] {};
+    public double[] steerAnglesRad = new double[] {};
+    // true while samples are held back waiting for an encoder reset to show up
+    public boolean waitingForEncoderReset = false;
+  }
+
+  // samples that can wait between two cycles, a few cycles' worth. New samples
+  // are dropped when it's full
+  private static final int capacity = 64;
+
+  private final SwerveModule[] modules;
+  private final DoubleUnaryOperator headingRadiansAtTimestamp;
+
+  // ring of samples, slot is index % capacity. Slots from head up to tail belong
+  // to the main loop, the rest to the notifier thread
+  private final double[] timestamps = new double[capacity];
+  private final double[] headingsRad = new double[capacity];
+  private final double[] driveDistancesMeters;
+  private final double[] steerAnglesRad;
+  private final int[] slotGenerations = new int[capacity];
+  // samples drained, only written by the main loop
+  private volatile long head = 0;
+  // samples published, only written by the notifier thread
+  private volatile long tail = 0;
+
+  // written by the main loop. resetGeneration is the generation of the last
+  // encoder reset, written before generation so a sample that sees the new
+  // generation also sees the reset
+  private volatile int generation = 0;
+  private volatile int resetGeneration = 0;
+  private volatile double encoderResetTimestamp = 0.0;
+  // written by the notifier thread, the reset generation whose encoder reset has
+  // shown up. Still waiting while it's behind resetGeneration
+  private volatile int settledGeneration = 0;
+
+  // only used by the notifier thread
+  private final double[] readDistances;
+  private final double[] readAngles;
+
+  private final Notifier notifier;
+
+  /**
+   * Parameters:
+   * the modules to sample
+   * the heading in radians at an FPGA timestamp, so the gyro is matched to the
+   * time the encoders were read
+   */
+  public OdometryThread(SwerveModule[] modules, DoubleUnaryOperator headingRadiansAtTimestamp) {
+    this.modules = modules;
+    this.headingRadiansAtTimestamp = headingRadiansAtTimestamp;
+
+    driveDistancesMeters = new double[capacity * modules.length];
+    steerAnglesRad = new double[capacity * modules.length];
+    readDistances = new double[modules.length];
+    readAngles = new double[modules.length];
+
+    notifier = new Notifier(this::sample);
+    notifier.setName("OdometryThread");
+  }
+
+  public void start() {
+    notifier.startPeriodic(1.0 / SwerveBaseConstants.odometryFrequencyHz);
+  }
+
+  public void stop() {
+    notifier.stop();
+  }
+
+  // runs on the notifier thread
+  private void sample() {
+    int sampleGeneration = generation;
+
+    double timestampSeconds = Timer.getFPGATimestamp();
+
+    for (int i = 0; i < modules.length; i++) {
+      readDistances[i] = -modules[i].readCurrentDistanceMeters();
+      readAngles[i] = modules[i].readIntegratedAngleRadians();
+    }
+    double headingRadians = headingRadiansAtTimestamp.applyAsDouble(timestampSeconds);
+
+    // reset while the modules were being read. One that happens after this check
+    // is caught by the slot's generation when it's drained
+    if (sampleGeneration != generation) {
+      return;
+    }
+
+    if (resetGeneration == sampleGeneration && settledGeneration != sampleGeneration) {
+      if (!readsReflectEncoderReset()
+          && timestampSeconds - encoderResetTimestamp < SwerveBaseConstants.odometryResetTimeoutSeconds) {
+        return;
+      }
+      settledGeneration = sampleGeneration;
+    }
+
+    long publishedCount = tail;
+    if (publishedCount - head >= capacity) {
+      return;
+    }
+
+    int slot = (int) (publishedCount % capacity);
+    timestamps[slot] = timestampSeconds;
+    headingsRad[slot] = headingRadians;
+    for (int i = 0; i < modules.length; i++) {
+      driveDistancesMeters[slot * modules.length + i] = readDistances[i];
+      steerAnglesRad[slot * modules.length + i] = readAngles[i];
+    }
+    slotGenerations[slot] = sampleGeneration;
+
+    // publishes the slot
+    tail = publishedCount + 1;
+  }
+
+  private boolean readsReflectEncoderReset() {
+    for (int i = 0; i < modules.length; i++) {
+      if (Math.abs(readDistances[i]) > SwerveBaseConstants.odometryResetToleranceMeters) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Moves every sample taken since the last call into the inputs
+   * Called once per cycle by SwerveBase, from the main loop
+   * The input arrays are sized to the sample count and handed to the logger, so
+   * they're new every cycle. Nothing is allocated per sample
+   */
+  public void updateInputs(OdometryThreadInputs inputs) {
+    long drainedCount = head;
+    long publishedCount = tail;
+    int currentGeneration = generation;
+
+    int count = 0;
+    for (long n = drainedCount; n < publishedCount; n++) {
+      if (slotGenerations[(int) (n % capacity)] == currentGeneration) {
+        count++;
+      }
+    }
+
+    inputs.timestamps = new double[count];
+    inputs.headingsRad = new double[count];
+    inputs.driveDistancesMeters = new double[count * modules.length];
+    inputs.steerAnglesRad = new double[count * modules.length];
+
+    int s = 0;
+    for (long n = drainedCount; n < publishedCount; n++) {
+      int slot = (int) (n % capacity);
+      if (slotGenerations[slot] != currentGeneration) {
+        continue;
+      }
+      inputs.timestamps[s] = timestamps[slot];
+      inputs.headingsRad[s] = headingsRad[slot];
+      System.arraycopy(driveDistancesMeters, slot * modules.length, inputs.driveDistancesMeters,
+          s * modules.length, modules.length);
+      System.arraycopy(steerAnglesRad, slot * modules.length, inputs.steerAnglesRad,
+          s * modules.length, modules.length);
+      s++;
+    }
+    inputs.waitingForEncoderReset = settledGeneration != resetGeneration;
+
+    // hands the slots back to the notifier thread
+    head = publishedCount;
+  }
+
+  // throws away every queued sample, and any being read right now, used when the
+  // pose gets reset. Called from the main loop
+  public void clear() {
+    generation++;
+  }
+
+  /**
+   * Same as clear(), and holds back samples until the drive encoders read back
+   * near zero or odometryResetTimeoutSeconds passes
+   * Called from the main loop right before the encoders are reset
+   */
+  public void clearForEncoderReset() {
+    int nextGeneration = generation + 1;
+    encoderResetTimestamp = Timer.getFPGATimestamp();
+    resetGeneration = nextGeneration;
+    generation = nextGeneration;
+  }
+
+}
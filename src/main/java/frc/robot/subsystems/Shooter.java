@@ -2,8 +2,6 @@ package frc.robot.subsystems;
 
 import java.util.function.DoubleSupplier;
 
-import org.apache.commons.math3.analysis.interpolation.SplineInterpolator;
-import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
 import org.littletonrobotics.junction.Logger;
 
 import com.revrobotics.CANSparkFlex;
@@ -12,11 +10,27 @@ import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkPIDController;
 import com.revrobotics.CANSparkLowLevel.MotorType;
 
+import edu.wpi.first.math.StateSpaceUtil;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.controller.ElevatorFeedforward;
+import edu.wpi.first.math.controller.LinearQuadraticRegulator;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.estimator.KalmanFilter;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.system.LinearSystem;
+import edu.wpi.first.math.system.LinearSystemLoop;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.DriverStation;
 
 import edu.wpi.first.wpilibj.DutyCycleEncoder;
-
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
@@ -24,6 +38,8 @@ import frc.robot.Constants;
 import frc.robot.Constants.DIOConstants;
 import frc.robot.Constants.ShooterConstants;
 import frc.robot.Constants.ShooterRegressionConstants;
+import frc.robot.utils.NoteSensor;
+import frc.robot.utils.ShooterLookupTable;
 
 public class Shooter extends SubsystemBase {
 
@@ -45,13 +61,126 @@ public class Shooter extends SubsystemBase {
     public double currentShooterUpperMotorRPMs;
     public double currentShooterLowerMotorRPMs;
 
-    static SplineInterpolator interpolator = new SplineInterpolator();
-    static PolynomialSplineFunction velocityFunction = interpolator.interpolate(ShooterRegressionConstants.distances,
-            ShooterRegressionConstants.velocities);
-    static PolynomialSplineFunction angleFunction = interpolator.interpolate(ShooterRegressionConstants.distances,
-            ShooterRegressionConstants.angles);
-
-    public DigitalInput shooterNoteSensor = new DigitalInput(DIOConstants.shooterOpticalDIO);
+    /**
+     * Flywheel velocity control
+     * Commands set a target with setFlywheelRPMs(), which either goes straight to
+     * the SPARK Flex velocity PID or is run every cycle through a state space loop
+     * per wheel here: a Kalman filter on the encoder velocity and an LQR, with the
+     * output clamped to the battery voltage and sent with setVoltage() so it's the
+     * same on a sagging battery. The note sensor going clear while the indexer is
+     * feeding a shot, see setFeedingShot(), means a note was just fed into the
+     * wheels, and noteBoostVolts is added for noteBoostSeconds to cover the speed
+     * it takes out of them
+     *
+     * Spin up time from a new target and recovery time after a shot are logged in
+     * both modes so they can be compared
+     */
+    private final SendableChooser<Boolean> flywheelControlModeChooser = new SendableChooser<>();
+    private boolean stateSpaceFlywheel = ShooterConstants.useStateSpaceFlywheel;
+
+    private final LinearSystemLoop<N1, N1, N1> upperFlywheelLoop = createFlywheelLoop();
+    private final LinearSystemLoop<N1, N1, N1> lowerFlywheelLoop = createFlywheelLoop();
+    private boolean flywheelLoopsRunning = false;
+
+    private double flywheelSetpointRPMs = 0;
+
+    /**
+     * Pre-spin
+     * While no command is running the flywheels, the robot is enabled, a note is
+     * in the shooter and the speaker is within preSpinMaxDistance, the flywheels
+     * are held at the shooting map's RPMs for the current distance, otherwise they
+     * coast. A command calling setFlywheelRPMs() takes over until it stops them
+     *
+     * Each command's spin up time is logged, and for pre-spun shots so is how much
+     * faster that was than the average spin up from rest. The energy the
+     * flywheels use while pre-spinning is added up as its battery cost
+     */
+    private final SendableChooser<Boolean> preSpinChooser = new SendableChooser<>();
+    private DoubleSupplier shotDistanceSupplier = null;
+
+    private boolean flywheelCommanded = false;
+    private boolean preSpinning = false;
+
+    // NaN when no command's spin up is being timed
+    private double commandSpinUpStartTimestamp = Double.NaN;
+    private boolean commandStartedPreSpun = false;
+    private double coldSpinUpSecondsSum = 0;
+    private int coldSpinUpCount = 0;
+
+    private double preSpinEnergyJoules = 0;
+
+    private boolean wasNotePresent = false;
+    private double noteBoostEndTimestamp = Double.NEGATIVE_INFINITY;
+
+    // NaN when nothing is being timed
+    private double spinUpStartTimestamp = Double.NaN;
+    private double recoveryStartTimestamp = Double.NaN;
+
+    // shot readiness, see isReadyToShoot()
+    private int flywheelReadyCount = 0;
+
+    // notes that have gone into the spinning flywheels since startup
+    private int shotCount = 0;
+
+    // whether the indexer is pushing the note into the flywheels, and when it
+    // last stopped
+    private boolean feedingShot = false;
+    private double feedingShotEndTimestamp = Double.NEGATIVE_INFINITY;
+    private double tiltGoalDegrees = Double.NaN;
+
+    /**
+     * Tilt position control
+     * Commands set a goal with setTiltGoalDegrees() and the tilt is driven to it
+     * every cycle until stopShooterTiltMotor(), either by a profiled PID on the
+     * roboRIO against the thru bore, or by Smart Motion on the SPARK MAX against
+     * its own encoder, which is seeded from the thru bore whenever the tilt isn't
+     * being driven. Smart Motion gets a gravity feedforward by angle as arbitrary
+     * feedforward, so the roboRIO only sends the goal and that voltage
+     */
+    private final SendableChooser<Boolean> tiltControlModeChooser = new SendableChooser<>();
+    private boolean onboardTiltControl = ShooterConstants.useOnboardTiltControl;
+
+    private RelativeEncoder shooterTiltEncoder;
+    private SparkPIDController shooterTiltController;
+
+    private final ProfiledPIDController rioTiltController = new ProfiledPIDController(ShooterConstants.tiltRIOkP,
+            0, 0.0,
+            new TrapezoidProfile.Constraints(ShooterConstants.tiltMaxVelocity, ShooterConstants.tiltMaxAcceleration));
+
+    private boolean tiltControlActive = false;
+
+    /**
+     * Elevator position control
+     * One profiled PID plus ElevatorFeedforward on the profile's velocity, driven
+     * to whatever goal setElevatorGoal() was last given, and it keeps holding
+     * that goal after the command that set it ends
+     * Never pushes up past the top hall effect or TOP_LIMIT, or down into the
+     * bottom hall effect, and the encoder is zeroed every time the bottom hall
+     * effect is reached. A goal of 0 homes, it keeps creeping down until the
+     * bottom hall effect trips even if the encoder already reads 0
+     */
+    private RelativeEncoder elevatorEncoder;
+
+    private final ProfiledPIDController elevatorController = new ProfiledPIDController(
+            ShooterConstants.elevatorkP, 0, ShooterConstants.elevatorkD,
+            new TrapezoidProfile.Constraints(ShooterConstants.elevatorMaxVelocity,
+                    ShooterConstants.elevatorMaxAcceleration));
+    private final ElevatorFeedforward elevatorFeedforward = new ElevatorFeedforward(ShooterConstants.elevatorkS,
+            ShooterConstants.elevatorkG, ShooterConstants.elevatorkV);
+
+    private boolean elevatorControlActive = false;
+    private double elevatorGoal = 0;
+    private boolean wasBottomLimitReached = false;
+    private boolean elevatorHoming = false;
+    private boolean wasElevatorDisabled = true;
+    // NaN when no move is being timed
+    private double elevatorMoveStartTimestamp = Double.NaN;
+
+    static final ShooterLookupTable lookupTable = new ShooterLookupTable(ShooterRegressionConstants.distances,
+            ShooterRegressionConstants.velocities, ShooterRegressionConstants.angles,
+            ShooterRegressionConstants.lookupTableStep);
+
+    public NoteSensor shooterNoteSensor = new NoteSensor("Shooter/NoteSensor", DIOConstants.shooterOpticalDIO);
 
     public DutyCycleEncoder shooterTiltThruBoreEncoder = new DutyCycleEncoder(
             DIOConstants.shooterTiltThruBoreEncoderDIO);
@@ -82,32 +211,79 @@ public class Shooter extends SubsystemBase {
 
         shooterTiltMotor = new CANSparkMax(Constants.ShooterConstants.shooterTiltID, MotorType.kBrushless);
         shooterTiltMotor.setInverted(true);
+        shooterTiltEncoder = shooterTiltMotor.getEncoder();
+        shooterTiltController = shooterTiltMotor.getPIDController();
 
         indexerMotor = new CANSparkMax(Constants.ShooterConstants.indexerID, MotorType.kBrushless);
 
         elevatorMotor = new CANSparkMax(Constants.ShooterConstants.elevatorID,
                 MotorType.kBrushless);
 
-        elevatorMotor.getEncoder().setPosition(0);
+        elevatorEncoder = elevatorMotor.getEncoder();
+        elevatorEncoder.setPosition(0);
 
         elevatorMotor.setInverted(false);
 
         shooterTiltMotor.setInverted(false);
 
-        shooterUpperController.setP(0.00015);
+        shooterUpperController.setP(ShooterConstants.flywheelOnboardkP);
         shooterUpperController.setI(0);
         shooterUpperController.setD(0);
-        shooterUpperController.setFF(0.000155);
+        shooterUpperController.setFF(ShooterConstants.flywheelOnboardFF);
         shooterUpperController.setOutputRange(-1, 1);
 
         // elevatorMotor.enableVoltageCompensation(12);
 
-        shooterLowerController.setP(0.00015);
+        shooterLowerController.setP(ShooterConstants.flywheelOnboardkP);
         shooterLowerController.setI(0);
         shooterLowerController.setD(0);
-        shooterLowerController.setFF(0.000155);
+        shooterLowerController.setFF(ShooterConstants.flywheelOnboardFF);
         shooterLowerController.setOutputRange(-1, 1);
 
+        if (ShooterConstants.useStateSpaceFlywheel) {
+            flywheelControlModeChooser.setDefaultOption("roboRIO state space", true);
+            flywheelControlModeChooser.addOption("SPARK Flex PID", false);
+        } else {
+            flywheelControlModeChooser.setDefaultOption("SPARK Flex PID", false);
+            flywheelControlModeChooser.addOption("roboRIO state space", true);
+        }
+        SmartDashboard.putData("Flywheel Control Mode", flywheelControlModeChooser);
+
+        if (ShooterConstants.usePreSpin) {
+            preSpinChooser.setDefaultOption("On", true);
+            preSpinChooser.addOption("Off", false);
+        } else {
+            preSpinChooser.setDefaultOption("Off", false);
+            preSpinChooser.addOption("On", true);
+        }
+        SmartDashboard.putData("Flywheel Pre-Spin", preSpinChooser);
+
+        // the tilt encoder reads in degrees of shooter tilt, same as the thru bore
+        shooterTiltEncoder.setPositionConversionFactor(360.0 / ShooterConstants.shooterTiltGearRatio);
+        shooterTiltEncoder.setVelocityConversionFactor(360.0 / ShooterConstants.shooterTiltGearRatio / 60.0);
+
+        shooterTiltController.setP(ShooterConstants.onboardTiltkP);
+        shooterTiltController.setI(0);
+        shooterTiltController.setD(ShooterConstants.onboardTiltkD);
+        shooterTiltController.setFF(ShooterConstants.onboardTiltkFF);
+        shooterTiltController.setOutputRange(-1, 1);
+        shooterTiltController.setSmartMotionMaxVelocity(ShooterConstants.tiltMaxVelocity, 0);
+        shooterTiltController.setSmartMotionMaxAccel(ShooterConstants.tiltMaxAcceleration, 0);
+        shooterTiltController.setSmartMotionAllowedClosedLoopError(ShooterConstants.tiltReadyTolerance / 2, 0);
+
+        rioTiltController.setTolerance(1);
+
+        elevatorController.setTolerance(ShooterConstants.elevatorTolerance);
+
+        if (ShooterConstants.useOnboardTiltControl) {
+            tiltControlModeChooser.setDefaultOption("SPARK MAX Smart Motion", true);
+            tiltControlModeChooser.addOption("roboRIO", false);
+        } else {
+            tiltControlModeChooser.setDefaultOption("roboRIO", false);
+            tiltControlModeChooser.addOption("SPARK MAX Smart Motion", true);
+        }
+        SmartDashboard.putData("Tilt Control Mode", tiltControlModeChooser);
+
         // shooterLowerMotor.restoreFactoryDefaults();
         // shooterLowerMotor.setInverted(true);
 
@@ -138,9 +314,8 @@ public class Shooter extends SubsystemBase {
         SmartDashboard.putBoolean("is SHOOTER top Limit Reached", isTopLimitReached());
         SmartDashboard.putBoolean("is SHOOTER bottom limit Reached", isBottomLimitReached());
 
-        if (isBottomLimitReached()) {
-            shooterTiltMotor.getEncoder().setPosition(0);
-        }
+        // the tilt encoder is seeded from the thru bore in updateTilt(), the elevator's
+        // bottom switch isn't a tilt reference
 
         // double tiltSetpoint = ShooterConstants.alignToCollectorPos;
 
@@ -150,7 +325,7 @@ public class Shooter extends SubsystemBase {
 
         Logger.recordOutput("Absolute Shooter Tilt Pos Degrees", getAbsoluteShooterTiltPosDegrees());
         Logger.recordOutput("Absolute Shooter Tilt Pos Raw", getAbsoluteShooterTiltPosRaw());
-        Logger.recordOutput("shooter elevator pos", elevatorMotor.getEncoder().getPosition());
+        Logger.recordOutput("shooter elevator pos", elevatorEncoder.getPosition());
 
         // Logger.recordOutput("shooter tilt setpoint", tiltSetpoint);
         // Logger.recordOutput("tiltoutput", tiltOutput);
@@ -161,7 +336,369 @@ public class Shooter extends SubsystemBase {
         Logger.recordOutput("UpperMotorRPMs", currentShooterUpperMotorRPMs);
         Logger.recordOutput("LowerMotorRPMs ", currentShooterUpperMotorRPMs);
         Logger.recordOutput("shooter optical", isNotePresent());
+        shooterNoteSensor.update();
+
+        updateFlywheels();
+        updateTilt();
+        updateElevator();
+
+    }
+
+    private void updateElevator() {
+        boolean bottomLimitReached = isBottomLimitReached();
+
+        // the elevator starts wherever it was at power on, re-home it whenever it
+        // gets to the bottom
+        if (bottomLimitReached && !wasBottomLimitReached) {
+            elevatorEncoder.setPosition(0);
+            elevatorHoming = false;
+            if (elevatorControlActive) {
+                elevatorController.reset(0);
+            }
+        }
+        wasBottomLimitReached = bottomLimitReached;
+
+        double position = elevatorEncoder.getPosition();
+
+        // the goal is kept through disable but the motor isn't driven, so start the
+        // profile over from where the elevator actually is when it's enabled again
+        boolean disabled = DriverStation.isDisabled();
+        if (wasElevatorDisabled && !disabled && elevatorControlActive) {
+            // encoder velocity is in RPM
+            elevatorController.reset(position, elevatorEncoder.getVelocity() / 60.0);
+        }
+        wasElevatorDisabled = disabled;
+
+        if (elevatorControlActive) {
+            double pidVolts = elevatorController.calculate(position, elevatorGoal);
+            double feedforwardVolts = elevatorFeedforward.calculate(elevatorController.getSetpoint().velocity);
+            double volts = pidVolts + feedforwardVolts;
+
+            // the encoder drifts, so reaching 0 doesn't mean the bottom was reached
+            if (elevatorHoming && !bottomLimitReached && elevatorController.atGoal()) {
+                volts = ShooterConstants.elevatorHomingVolts;
+            }
+
+            // still allowed to hold itself up at the top
+            if (isTopLimitReached() || position >= ShooterConstants.TOP_LIMIT) {
+                volts = Math.min(volts, ShooterConstants.elevatorkG);
+            }
+            if (bottomLimitReached) {
+                volts = Math.max(volts, 0);
+            }
+
+            elevatorMotor.setVoltage(volts);
+
+            Logger.recordOutput("Shooter/ElevatorVolts", volts);
+            Logger.recordOutput("Shooter/ElevatorSetpoint", elevatorController.getSetpoint().position);
+        }
+
+        if (isElevatorAtGoal() && !Double.isNaN(elevatorMoveStartTimestamp)) {
+            Logger.recordOutput("Shooter/ElevatorMoveSeconds", Timer.getFPGATimestamp() - elevatorMoveStartTimestamp);
+            elevatorMoveStartTimestamp = Double.NaN;
+        }
+
+        Logger.recordOutput("Shooter/ElevatorActive", elevatorControlActive);
+        Logger.recordOutput("Shooter/ElevatorGoal", elevatorGoal);
+    }
+
+    /**
+     * Drives the elevator to a goal and holds it there until another goal is set
+     * Parameters:
+     * goal in motor rotations from the bottom, clamped to 0 to TOP_LIMIT. At 0 it
+     * homes, driving down until the bottom hall effect trips
+     */
+    public void setElevatorGoal(double goalRotations) {
+        goalRotations = MathUtil.clamp(goalRotations, 0, ShooterConstants.TOP_LIMIT);
+
+        boolean newMove = !elevatorControlActive
+                || Math.abs(goalRotations - elevatorGoal) > ShooterConstants.elevatorTolerance;
+
+        if (!elevatorControlActive) {
+            // encoder velocity is in RPM
+            elevatorController.reset(elevatorEncoder.getPosition(), elevatorEncoder.getVelocity() / 60.0);
+            elevatorControlActive = true;
+        }
+        elevatorGoal = goalRotations;
+        elevatorHoming = goalRotations <= 0 && !isBottomLimitReached();
 
+        if (newMove && !isElevatorAtGoal()) {
+            elevatorMoveStartTimestamp = Timer.getFPGATimestamp();
+        }
+    }
+
+    public boolean isElevatorAtGoal() {
+        return !elevatorHoming
+                && Math.abs(elevatorEncoder.getPosition() - elevatorGoal) < ShooterConstants.elevatorTolerance;
+    }
+
+    public double getElevatorPosition() {
+        return elevatorEncoder.getPosition();
+    }
+
+    private void updateTilt() {
+        double tiltDegrees = getAbsoluteShooterTiltPosDegrees();
+
+        boolean onboard = tiltControlModeChooser.getSelected();
+        if (onboard != onboardTiltControl) {
+            onboardTiltControl = onboard;
+            rioTiltController.reset(tiltDegrees, shooterTiltEncoder.getVelocity());
+        }
+
+        // Smart Motion only knows where the tilt is from the motor encoder, keep it
+        // lined up with the thru bore while nothing is moving it
+        if (!tiltControlActive && shooterTiltThruBoreEncoder.isConnected()
+                && Math.abs(shooterTiltEncoder.getPosition() - tiltDegrees) > ShooterConstants.tiltReseedTolerance) {
+            shooterTiltEncoder.setPosition(tiltDegrees);
+        }
+
+        if (tiltControlActive) {
+            if (onboardTiltControl) {
+                double gravityVolts = ShooterConstants.tiltkG
+                        * Math.cos(Math.toRadians(tiltDegrees - ShooterConstants.tiltLevelAngle));
+                shooterTiltController.setReference(tiltGoalDegrees, CANSparkMax.ControlType.kSmartMotion, 0,
+                        gravityVolts, SparkPIDController.ArbFFUnits.kVoltage);
+                Logger.recordOutput("Shooter/TiltGravityVolts", gravityVolts);
+            } else {
+                double output = rioTiltController.calculate(tiltDegrees,
+                        new TrapezoidProfile.State(tiltGoalDegrees, 0));
+                shooterTiltMotor.set(MathUtil.clamp(output, -1.0, 1.0));
+            }
+        }
+
+        Logger.recordOutput("Shooter/OnboardTiltControl", onboardTiltControl);
+        Logger.recordOutput("Shooter/TiltActive", tiltControlActive);
+        Logger.recordOutput("Shooter/TiltGoal", tiltGoalDegrees);
+        Logger.recordOutput("Shooter/TiltRelativeDegrees", shooterTiltEncoder.getPosition());
+    }
+
+    private static LinearSystemLoop<N1, N1, N1> createFlywheelLoop() {
+        LinearSystem<N1, N1, N1> plant = LinearSystemId.createFlywheelSystem(DCMotor.getNeoVortex(1),
+                ShooterConstants.flywheelMOI, ShooterConstants.flywheelGearing);
+
+        KalmanFilter<N1, N1, N1> observer = new KalmanFilter<>(N1.instance, N1.instance, plant,
+                VecBuilder.fill(ShooterConstants.flywheelModelStdDev),
+                VecBuilder.fill(ShooterConstants.flywheelMeasurementStdDev), 0.020);
+
+        LinearQuadraticRegulator<N1, N1, N1> controller = new LinearQuadraticRegulator<>(plant,
+                VecBuilder.fill(ShooterConstants.flywheelLQRVelocityTolerance), VecBuilder.fill(12.0), 0.020);
+
+        // clamp to what the battery can actually give, so the observer's prediction
+        // uses the voltage that was really applied
+        return new LinearSystemLoop<>(plant, controller, observer,
+                u -> StateSpaceUtil.desaturateInputVector(u, RobotController.getBatteryVoltage()), 0.020);
+    }
+
+    /**
+     * Sets the flywheel speed
+     * Parameters:
+     * RPMs for both flywheels, 0 or less stops them
+     */
+    public void setFlywheelRPMs(double rpms) {
+        if (rpms <= 0) {
+            stopShooterVelocityMotors();
+            return;
+        }
+
+        if (!flywheelCommanded) {
+            flywheelCommanded = true;
+            commandSpinUpStartTimestamp = Timer.getFPGATimestamp();
+            commandStartedPreSpun = preSpinning;
+            preSpinning = false;
+        }
+
+        applyFlywheelRPMs(rpms);
+    }
+
+    private void applyFlywheelRPMs(double rpms) {
+        // cycles spent at the old setpoint don't count toward being ready at this one
+        if (Math.abs(rpms - flywheelSetpointRPMs) > ShooterConstants.flywheelToleranceRPMs) {
+            spinUpStartTimestamp = Timer.getFPGATimestamp();
+            flywheelReadyCount = 0;
+        }
+        flywheelSetpointRPMs = rpms;
+
+        if (!stateSpaceFlywheel) {
+            shooterUpperController.setReference(rpms, CANSparkMax.ControlType.kVelocity);
+            shooterLowerController.setReference(rpms, CANSparkMax.ControlType.kVelocity);
+        }
+    }
+
+    public double getFlywheelSetpointRPMs() {
+        return flywheelSetpointRPMs;
+    }
+
+    /**
+     * Where pre-spin gets the distance to the speaker from
+     * Parameters:
+     * camera to speaker distance from the fused pose, inches
+     */
+    public void setShotDistanceSupplier(DoubleSupplier distanceInches) {
+        shotDistanceSupplier = distanceInches;
+    }
+
+    private void updatePreSpin(double dt) {
+        // whatever was running the flywheels is finished once the robot is disabled,
+        // some auto commands leave them spinning when they end
+        if (DriverStation.isDisabled() && (flywheelCommanded || preSpinning)) {
+            preSpinning = false;
+            stopShooterVelocityMotors();
+        }
+
+        if (flywheelCommanded) {
+            return;
+        }
+
+        boolean wanted = false;
+        double distance = Double.NaN;
+        if (preSpinChooser.getSelected() && shotDistanceSupplier != null && DriverStation.isEnabled()
+                && isNotePresent()) {
+            distance = shotDistanceSupplier.getAsDouble();
+            wanted = distance <= ShooterConstants.preSpinMaxDistance;
+        }
+
+        if (wanted) {
+            preSpinning = true;
+            applyFlywheelRPMs(getRegressionVelocity(distance) * ShooterConstants.preSpinRPMFraction);
+        } else if (preSpinning) {
+            preSpinning = false;
+            stopFlywheelMotors();
+        }
+
+        if (preSpinning) {
+            // input power of both controllers, from their bus voltage and duty cycle
+            double watts = shooterUpperMotor.getBusVoltage() * Math.abs(shooterUpperMotor.getAppliedOutput())
+                    * shooterUpperMotor.getOutputCurrent()
+                    + shooterLowerMotor.getBusVoltage() * Math.abs(shooterLowerMotor.getAppliedOutput())
+                            * shooterLowerMotor.getOutputCurrent();
+            preSpinEnergyJoules += watts * dt;
+            Logger.recordOutput("Shooter/PreSpinWatts", watts);
+        }
+
+        Logger.recordOutput("Shooter/PreSpinning", preSpinning);
+        Logger.recordOutput("Shooter/PreSpinEnergyJoules", preSpinEnergyJoules);
+    }
+
+    // goes up by one every time the note sensor sees a note go into the spinning
+    // flywheels
+    public int getShotCount() {
+        return shotCount;
+    }
+
+    /**
+     * Set by whatever runs the indexer to fire, like RunIndexerCmd
+     * Only a note leaving the sensor while it's set, or within
+     * shotFeedGraceSeconds after, counts as a shot. A staged note being backed
+     * off or losing the sensor while pre-spinning doesn't
+     */
+    public void setFeedingShot(boolean feeding) {
+        if (feedingShot && !feeding) {
+            feedingShotEndTimestamp = Timer.getFPGATimestamp();
+        }
+        feedingShot = feeding;
+    }
+
+    private void updateFlywheels() {
+        double now = Timer.getFPGATimestamp();
+
+        boolean stateSpace = flywheelControlModeChooser.getSelected();
+        if (stateSpace != stateSpaceFlywheel) {
+            stateSpaceFlywheel = stateSpace;
+            flywheelLoopsRunning = false;
+            // the onboard PID only hears about a target when it's set
+            if (!stateSpaceFlywheel && flywheelSetpointRPMs > 0) {
+                shooterUpperController.setReference(flywheelSetpointRPMs, CANSparkMax.ControlType.kVelocity);
+                shooterLowerController.setReference(flywheelSetpointRPMs, CANSparkMax.ControlType.kVelocity);
+            }
+        }
+
+        updatePreSpin(0.020);
+
+        boolean notePresent = isNotePresent();
+        boolean fed = feedingShot || now - feedingShotEndTimestamp < ShooterConstants.shotFeedGraceSeconds;
+        if (wasNotePresent && !notePresent && flywheelSetpointRPMs > 0 && fed) {
+            noteBoostEndTimestamp = now + ShooterConstants.noteBoostSeconds;
+            recoveryStartTimestamp = now;
+            shotCount++;
+        }
+        wasNotePresent = notePresent;
+
+        if (stateSpaceFlywheel && flywheelSetpointRPMs > 0) {
+            double upperRadPerSec = Units.rotationsPerMinuteToRadiansPerSecond(currentShooterUpperMotorRPMs);
+            double lowerRadPerSec = Units.rotationsPerMinuteToRadiansPerSecond(currentShooterLowerMotorRPMs);
+
+            // start the observers from the wheels' actual speed
+            if (!flywheelLoopsRunning) {
+                upperFlywheelLoop.reset(VecBuilder.fill(upperRadPerSec));
+                lowerFlywheelLoop.reset(VecBuilder.fill(lowerRadPerSec));
+                flywheelLoopsRunning = true;
+            }
+
+            double boostVolts = now < noteBoostEndTimestamp ? ShooterConstants.noteBoostVolts : 0.0;
+
+            double upperVolts = runFlywheelLoop(upperFlywheelLoop, upperRadPerSec, boostVolts);
+            double lowerVolts = runFlywheelLoop(lowerFlywheelLoop, lowerRadPerSec, boostVolts);
+            shooterUpperMotor.setVoltage(upperVolts);
+            shooterLowerMotor.setVoltage(lowerVolts);
+
+            Logger.recordOutput("Shooter/UpperFlywheelVolts", upperVolts);
+            Logger.recordOutput("Shooter/LowerFlywheelVolts", lowerVolts);
+        }
+
+        boolean atSetpoint = flywheelSetpointRPMs > 0
+                && Math.abs(currentShooterUpperMotorRPMs - flywheelSetpointRPMs) < ShooterConstants.flywheelToleranceRPMs
+                && Math.abs(currentShooterLowerMotorRPMs - flywheelSetpointRPMs) < ShooterConstants.flywheelToleranceRPMs;
+
+        if (atSetpoint && flywheelCommanded && !Double.isNaN(commandSpinUpStartTimestamp)) {
+            double spinUpSeconds = now - commandSpinUpStartTimestamp;
+            commandSpinUpStartTimestamp = Double.NaN;
+            Logger.recordOutput("Shooter/CommandSpinUpSeconds", spinUpSeconds);
+
+            if (commandStartedPreSpun) {
+                double coldSpinUpSeconds = coldSpinUpCount > 0 ? coldSpinUpSecondsSum / coldSpinUpCount
+                        : ShooterConstants.preSpinDefaultColdSpinUpSeconds;
+                Logger.recordOutput("Shooter/PreSpinSavedSeconds", coldSpinUpSeconds - spinUpSeconds);
+            } else {
+                coldSpinUpSecondsSum += spinUpSeconds;
+                coldSpinUpCount++;
+            }
+        }
+
+        if (atSetpoint && !Double.isNaN(spinUpStartTimestamp)) {
+            Logger.recordOutput("Shooter/SpinUpSeconds", now - spinUpStartTimestamp);
+            spinUpStartTimestamp = Double.NaN;
+        }
+        // the wheels take a moment to slow down, so recovery is only over once the
+        // boost has finished
+        if (atSetpoint && !Double.isNaN(recoveryStartTimestamp) && now >= noteBoostEndTimestamp) {
+            Logger.recordOutput("Shooter/RecoverySeconds", now - recoveryStartTimestamp);
+            recoveryStartTimestamp = Double.NaN;
+        }
+
+        Logger.recordOutput("Shooter/StateSpaceFlywheel", stateSpaceFlywheel);
+        Logger.recordOutput("Shooter/FlywheelSetpointRPMs", flywheelSetpointRPMs);
+        Logger.recordOutput("Shooter/FlywheelAtSetpoint", atSetpoint);
+
+        flywheelReadyCount = atSetpoint ? flywheelReadyCount + 1 : 0;
+        Logger.recordOutput("Shooter/ReadyToShoot", isReadyToShoot());
+    }
+
+    // one cycle of a flywheel's state space loop, returns the volts to apply
+    private double runFlywheelLoop(LinearSystemLoop<N1, N1, N1> loop, double measuredRadPerSec,
+            double boostVolts) {
+        var nextR = VecBuilder.fill(Units.rotationsPerMinuteToRadiansPerSecond(flywheelSetpointRPMs));
+        loop.setNextR(nextR);
+        loop.correct(VecBuilder.fill(measuredRadPerSec));
+
+        // what loop.predict() does, except the observer predicts with the voltage that's
+        // actually applied, boost included. Otherwise the boost shows up to the filter
+        // as acceleration the model can't explain
+        double loopVolts = loop.clampInput(loop.getController().calculate(loop.getXHat(), nextR)
+                .plus(loop.getFeedforward().calculate(nextR))).get(0, 0);
+        double batteryVolts = RobotController.getBatteryVoltage();
+        double appliedVolts = Math.max(-batteryVolts, Math.min(loopVolts + boostVolts, batteryVolts));
+        loop.getObserver().predict(VecBuilder.fill(appliedVolts), 0.020);
+        return appliedVolts;
     }
 
     public boolean isTopLimitReached() {
@@ -173,36 +710,47 @@ public class Shooter extends SubsystemBase {
     }
 
     public boolean isNotePresent() {
-        return !shooterNoteSensor.get();
+        return shooterNoteSensor.isNotePresent();
     }
 
-    public double[] calculateDesiredShooterState(double distance) {
-        double predictedVelocity = 0;
-        double predictedAngle = 0;
-
-        // Ensure the distance is within the bounds of the original data
-        if (distance >= ShooterRegressionConstants.distances[0]
-                && distance <= ShooterRegressionConstants.distances[ShooterRegressionConstants.distances.length - 1]) {
-            predictedVelocity = velocityFunction.value(distance);
-            predictedAngle = angleFunction.value(distance);
-
-        } else {
-            // Handle the case where the distance is out of bounds (will just return a
-            // shooter state that has 0 velocity and 0 angle)
-            System.out.println("Distance is out of the valid range.");
-
-        }
-        // Print the predicted shooter velocity
-        System.out
-                .println("Predicted shooter velocity at " + distance + " meters: " + predictedVelocity + " units");
+    /**
+     * Stops the indexer from the sensor's interrupt as soon as a note arrives
+     * Parameters:
+     * anything else feeding the note that should stop with it, or null
+     */
+    public void armNoteStop(Runnable alsoStop) {
+        shooterNoteSensor.arm(() -> {
+            indexerMotor.stopMotor();
+            if (alsoStop != null) {
+                alsoStop.run();
+            }
+        });
+    }
 
-        // Print the predicted shooter angle
-        System.out.println("Predicted shooter angle at " + distance + " meters: " + predictedAngle + " units");
+    public void disarmNoteStop() {
+        shooterNoteSensor.disarm();
+    }
 
-        double[] desiredShooterStateArray = { predictedVelocity, predictedAngle };
+    /**
+     * Looks up the flywheel RPMs and tilt angle for a distance
+     * Distances outside the regression data are clamped to its ends
+     * Parameters:
+     * distance from the camera to the speaker, inches
+     * array of at least 2 that the RPMs and tilt angle in degrees get written into
+     */
+    public static void calculateDesiredShooterState(double distance, double[] stateOut) {
+        lookupTable.lookup(distance, stateOut);
+    }
 
-        return desiredShooterStateArray;
+    // RPMs part of calculateDesiredShooterState(), for something that runs every
+    // cycle
+    public static double getRegressionVelocity(double distance) {
+        return lookupTable.getVelocity(distance);
+    }
 
+    // tilt angle part of calculateDesiredShooterState(), degrees
+    public static double getRegressionAngle(double distance) {
+        return lookupTable.getAngle(distance);
     }
 
     public void setIndexMotorSpeed(double speed) {
@@ -231,16 +779,63 @@ public class Shooter extends SubsystemBase {
         return shooterTiltThruBoreEncoder.getAbsolutePosition();
     }
 
+    /**
+     * Drives the tilt to a goal until stopShooterTiltMotor() is called
+     * Can be called every cycle with a moving goal
+     * Parameters:
+     * tilt goal, same units as getAbsoluteShooterTiltPosDegrees()
+     */
+    public void setTiltGoalDegrees(double goalDegrees) {
+        if (!tiltControlActive) {
+            rioTiltController.reset(getAbsoluteShooterTiltPosDegrees(), shooterTiltEncoder.getVelocity());
+            tiltControlActive = true;
+        }
+        tiltGoalDegrees = goalDegrees;
+    }
+
+    // last tilt goal, NaN if there hasn't been one
+    public double getTiltGoalDegrees() {
+        return tiltGoalDegrees;
+    }
+
+    public boolean isTiltAtGoal() {
+        return !Double.isNaN(tiltGoalDegrees)
+                && Math.abs(getAbsoluteShooterTiltPosDegrees() - tiltGoalDegrees) < ShooterConstants.tiltReadyTolerance;
+    }
+
+    /**
+     * True once the flywheels have been at their setpoint for
+     * flywheelReadyCycles in a row and the tilt is at the last goal it was given
+     * Heading isn't checked here, the command firing the note can add that
+     */
+    public boolean isReadyToShoot() {
+        return flywheelSetpointRPMs > 0 && flywheelReadyCount >= ShooterConstants.flywheelReadyCycles
+                && isTiltAtGoal();
+    }
+
     public double getAbsoluteShooterTiltPosDegrees() {
         return -Units.rotationsToDegrees(getAbsoluteShooterTiltPosRaw() - ShooterConstants.TILT_OFFSET);
     }
 
+    // stops the flywheels and hands them back to pre-spin
     public void stopShooterVelocityMotors() {
+        flywheelCommanded = false;
+        commandSpinUpStartTimestamp = Double.NaN;
+        stopFlywheelMotors();
+    }
+
+    private void stopFlywheelMotors() {
+        flywheelSetpointRPMs = 0;
+        flywheelLoopsRunning = false;
+        spinUpStartTimestamp = Double.NaN;
+        recoveryStartTimestamp = Double.NaN;
         shooterUpperMotor.stopMotor();
         shooterLowerMotor.stopMotor();
     }
 
+    // stops driving the tilt, the last goal is kept for isReadyToShoot()
     public void stopShooterTiltMotor() {
+        tiltControlActive = false;
         shooterTiltMotor.stopMotor();
     }
 
@@ -4,14 +4,19 @@ import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
 import frc.robot.Constants.SwerveBaseConstants;
+import frc.robot.Constants.SwerveModuleConstants;
 import frc.robot.Constants.VisionConstants;
+import frc.robot.utils.FieldGeometry;
+import frc.robot.utils.PoseHistory;
+import frc.robot.utils.SlipDetector;
+import frc.robot.utils.VisionGate;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.littletonrobotics.junction.Logger;
 import org.photonvision.EstimatedRobotPose;
 
-import com.kauailabs.navx.frc.AHRS;
 import com.pathplanner.lib.auto.AutoBuilder;
 import com.pathplanner.lib.path.PathConstraints;
 import com.pathplanner.lib.util.HolonomicPathFollowerConfig;
@@ -19,22 +24,26 @@ import com.pathplanner.lib.util.PIDConstants;
 import com.pathplanner.lib.util.PathPlannerLogging;
 import com.pathplanner.lib.util.ReplanningConfig;
 
+import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 
-import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
 
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.RobotState;
-import edu.wpi.first.wpilibj.SPI;
+import edu.wpi.first.wpilibj.Timer;
 
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 public class SwerveBase extends SubsystemBase {
@@ -53,43 +62,101 @@ public class SwerveBase extends SubsystemBase {
   /**
    * SwerveModule objects
    * Parameters:
+   * module ID
+   * ModuleIO for the module's hardware, which takes:
    * drive motor can ID
    * rotation motor can ID
    * external CANCoder can ID
    * measured CANCoder offset
+   * 
+   * ModuleIOSim and GyroIOSim are used in the simulator, and empty IOs when
+   * replaying a log
    */
 
-  private final SwerveModule frontLeft = new SwerveModule(0,
-      SwerveBaseConstants.frontLeftDriveMotorId,
-      SwerveBaseConstants.frontLeftRotationMotorId,
-      SwerveBaseConstants.frontLeftRotationEncoderId,
-      SwerveBaseConstants.frontLeftAngleOffset);
+  private final SwerveModule frontLeft;
+  private final SwerveModule frontRight;
+  private final SwerveModule rearLeft;
+  private final SwerveModule rearRight;
 
-  private final SwerveModule frontRight = new SwerveModule(1,
-      SwerveBaseConstants.frontRightDriveMotorId,
-      SwerveBaseConstants.frontRightRotationMotorId,
-      SwerveBaseConstants.frontRightRotationEncoderId,
-      SwerveBaseConstants.frontRightAngleOffset);
+  private final SwerveModule[] modules;
 
-  private final SwerveModule rearLeft = new SwerveModule(2,
-      SwerveBaseConstants.rearLeftDriveMotorId,
-      SwerveBaseConstants.rearLeftRotationMotorId,
-      SwerveBaseConstants.rearLeftRotationEncoderId,
-      SwerveBaseConstants.rearLeftAngleOffset);
+  private final GyroIO gyroIO;
+  private final GyroIOInputsAutoLogged gyroInputs = new GyroIOInputsAutoLogged();
 
-  private final SwerveModule rearRight = new SwerveModule(3,
-      SwerveBaseConstants.rearRightDriveMotorId,
-      SwerveBaseConstants.rearRightRotationMotorId,
-      SwerveBaseConstants.rearRightRotationEncoderId,
-      SwerveBaseConstants.rearRightAngleOffset);
+  // module distances from the last simulation step, for integrating the simulated
+  // gyro. Not valid until a step has run since the drive distances were reset
+  private final double[] lastSimDistances = new double[4];
+  private boolean hasLastSimDistances = false;
+  private final Twist2d simTwist = new Twist2d();
 
-  private final SwerveModule[] modules = new SwerveModule[] { frontLeft, frontRight, rearLeft, rearRight };
+  // where the simulated robot really is, integrated from the simulated modules,
+  // for the simulated cameras to render from
+  private Pose2d simulatedPose = new Pose2d();
 
-  private final AHRS navX;
+  // picks where the module drive and steer loops run, to A/B compare them
+  private final SendableChooser<Boolean> moduleControlModeChooser = new SendableChooser<>();
 
   private final SwerveDrivePoseEstimator poseEstimator;
   private Vision vision = Vision.getInstance();
 
+  // throws out vision estimates that can't be right before they're fused
+  private final VisionGate visionGate = new VisionGate(vision.getFieldLayout());
+  private final double[] gatePose = new double[3];
+  private static final String[] visionGateLogKeys = new String[VisionGate.Result.values().length];
+  static {
+    for (VisionGate.Result result : VisionGate.Result.values()) {
+      visionGateLogKeys[result.ordinal()] = "Vision/Gate/" + result.name();
+    }
+  }
+
+  // samples the modules and navX between main loop cycles
+  private final OdometryThread odometryThread;
+  private final OdometryThreadInputsAutoLogged odometryInputs = new OdometryThreadInputsAutoLogged();
+
+  // set when the drive encoders are reset, the estimator is moved onto the new
+  // distances at the first sample that reads them
+  private boolean resyncEstimator = false;
+
+  // nothing is fused into the estimator until the gyro is ready
+  private boolean wasGyroReady = false;
+
+  /**
+   * Preallocated buffers for the drive path so that driving every cycle doesn't
+   * allocate
+   */
+  private final double[] moduleX = new double[4];
+  private final double[] moduleY = new double[4];
+  private final double[] desiredSpeeds = new double[4];
+  private final double[] desiredAngles = new double[4];
+  private double discreteVx;
+  private double discreteVy;
+  private double discreteOmega;
+
+  // module locations relative to their centroid, for forward kinematics
+  private final double[] moduleCenteredX = new double[4];
+  private final double[] moduleCenteredY = new double[4];
+  private double moduleCentroidX;
+  private double moduleCentroidY;
+  private double moduleRadiusSquaredSum;
+
+  // fused pose once per cycle, for looking up where the robot was
+  private final PoseHistory poseHistory = new PoseHistory((int) (SwerveBaseConstants.poseHistorySeconds / 0.02));
+  private final double[] poseLookup = new double[3];
+  private final double[] velocityNewestPose = new double[3];
+  private final double[] velocityPastPose = new double[3];
+  private double lastOdometryTimestamp = 0.0;
+
+  // replaces slipping modules' distances before they reach the estimator
+  private final SlipDetector slipDetector = new SlipDetector(SwerveBaseConstants.moduleTranslations);
+  private final double[] filteredDistances = new double[4];
+  private final double[] fallbackDistances = new double[4];
+  private final double[] fallbackAngles = new double[4];
+
+  // reused when handing odometry samples to the pose estimator, which copies them
+  private final SwerveModulePosition[] samplePositions = new SwerveModulePosition[] {
+      new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition(),
+      new SwerveModulePosition() };
+
   /**
    * odometry for the robot, measured in meters for linear motion and radians for
    * rotational motion
@@ -101,14 +168,54 @@ public class SwerveBase extends SubsystemBase {
 
   public SwerveBase() {
 
-    navX = new AHRS(SPI.Port.kMXP);
-    new Thread(() -> {
-      try {
-        Thread.sleep(1000);
-        navX.reset();
-      } catch (Exception e) {
-      }
-    }).start();
+    switch (Constants.getMode()) {
+      case REAL:
+        frontLeft = new SwerveModule(0, new ModuleIOSparkMax(
+            SwerveBaseConstants.frontLeftDriveMotorId,
+            SwerveBaseConstants.frontLeftRotationMotorId,
+            SwerveBaseConstants.frontLeftRotationEncoderId,
+            SwerveBaseConstants.frontLeftAngleOffset));
+        frontRight = new SwerveModule(1, new ModuleIOSparkMax(
+            SwerveBaseConstants.frontRightDriveMotorId,
+            SwerveBaseConstants.frontRightRotationMotorId,
+            SwerveBaseConstants.frontRightRotationEncoderId,
+            SwerveBaseConstants.frontRightAngleOffset));
+        rearLeft = new SwerveModule(2, new ModuleIOSparkMax(
+            SwerveBaseConstants.rearLeftDriveMotorId,
+            SwerveBaseConstants.rearLeftRotationMotorId,
+            SwerveBaseConstants.rearLeftRotationEncoderId,
+            SwerveBaseConstants.rearLeftAngleOffset));
+        rearRight = new SwerveModule(3, new ModuleIOSparkMax(
+            SwerveBaseConstants.rearRightDriveMotorId,
+            SwerveBaseConstants.rearRightRotationMotorId,
+            SwerveBaseConstants.rearRightRotationEncoderId,
+            SwerveBaseConstants.rearRightAngleOffset));
+        gyroIO = new GyroIONavX();
+        break;
+
+      case SIM:
+        frontLeft = new SwerveModule(0, new ModuleIOSim());
+        frontRight = new SwerveModule(1, new ModuleIOSim());
+        rearLeft = new SwerveModule(2, new ModuleIOSim());
+        rearRight = new SwerveModule(3, new ModuleIOSim());
+        gyroIO = new GyroIOSim();
+        break;
+
+      default:
+        frontLeft = new SwerveModule(0, new ModuleIO() {
+        });
+        frontRight = new SwerveModule(1, new ModuleIO() {
+        });
+        rearLeft = new SwerveModule(2, new ModuleIO() {
+        });
+        rearRight = new SwerveModule(3, new ModuleIO() {
+        });
+        gyroIO = new GyroIO() {
+        };
+        break;
+    }
+
+    modules = new SwerveModule[] { frontLeft, frontRight, rearLeft, rearRight };
 
     // initialize the rotation offsets for the CANCoders
     frontLeft.initRotationOffset();
@@ -122,26 +229,59 @@ public class SwerveBase extends SubsystemBase {
     rearLeft.resetDistance();
     rearRight.resetDistance();
 
-    rearRight.getDriveMotor().setInverted(false);
-    rearLeft.getDriveMotor().setInverted(true);
-    frontRight.getDriveMotor().setInverted(false);
-    frontLeft.getDriveMotor().setInverted(true);
+    rearRight.setDriveInverted(false);
+    rearLeft.setDriveInverted(true);
+    frontRight.setDriveInverted(false);
+    frontLeft.setDriveInverted(true);
 
-    rearRight.getRotationMotor().setInverted(true);
-    rearLeft.getRotationMotor().setInverted(true);
-    frontRight.getRotationMotor().setInverted(true);
-    frontLeft.getRotationMotor().setInverted(true);
+    rearRight.setRotationInverted(true);
+    rearLeft.setRotationInverted(true);
+    frontRight.setRotationInverted(true);
+    frontLeft.setRotationInverted(true);
+
+    // take the first snapshot now that the encoders are reset
+    for (SwerveModule module : modules) {
+      module.updateInputs();
+    }
+    gyroIO.updateInputs(gyroInputs);
+
+    for (int i = 0; i < modules.length; i++) {
+      moduleX[i] = SwerveBaseConstants.moduleTranslations[i].getX();
+      moduleY[i] = SwerveBaseConstants.moduleTranslations[i].getY();
+      moduleCentroidX += moduleX[i] / modules.length;
+      moduleCentroidY += moduleY[i] / modules.length;
+    }
+    for (int i = 0; i < modules.length; i++) {
+      moduleCenteredX[i] = moduleX[i] - moduleCentroidX;
+      moduleCenteredY[i] = moduleY[i] - moduleCentroidY;
+      moduleRadiusSquaredSum += moduleCenteredX[i] * moduleCenteredX[i] + moduleCenteredY[i] * moduleCenteredY[i];
+    }
+
+    if (SwerveModuleConstants.useOnboardClosedLoop) {
+      moduleControlModeChooser.setDefaultOption("SPARK MAX onboard", true);
+      moduleControlModeChooser.addOption("roboRIO", false);
+    } else {
+      moduleControlModeChooser.setDefaultOption("roboRIO", false);
+      moduleControlModeChooser.addOption("SPARK MAX onboard", true);
+    }
+    SmartDashboard.putData("Module Control Mode", moduleControlModeChooser);
 
     configureAutoBuilder();
 
     poseEstimator = new SwerveDrivePoseEstimator(SwerveBaseConstants.kinematics,
         getHeading(), getModulePositions(),
-        new Pose2d(0, 0, navX.getRotation2d()), VisionConstants.STATE_STDS, VisionConstants.VISION_STDS);
+        new Pose2d(0, 0, getHeading()), VisionConstants.STATE_STDS, VisionConstants.VISION_STDS);
     // poseEstimator = new SwerveDrivePoseEstimator(
     // SwerveBaseConstants.kinematics,
     // getHeading(),
     // getModulePositions(), new Pose2d(0, 0, navX.getRotation2d()));
 
+    odometryThread = new OdometryThread(modules, gyroIO::readYawRadAt);
+    // when replaying, the samples come from the log instead
+    if (Constants.getMode() != Constants.Mode.REPLAY) {
+      odometryThread.start();
+    }
+
   }
 
   @Override
@@ -150,9 +290,70 @@ public class SwerveBase extends SubsystemBase {
     // update the odometry every 20ms
     // odometry.update(getHeading(), getModulePositions());
 
+    // read every module signal once for this cycle, before any commands use them
+    gyroIO.updateInputs(gyroInputs);
+    Logger.processInputs("Drive/Gyro", gyroInputs);
+
+    boolean onboardClosedLoop = moduleControlModeChooser.getSelected();
+    for (SwerveModule module : modules) {
+      module.updateInputs();
+      module.setOnboardClosedLoop(onboardClosedLoop);
+    }
+    Logger.recordOutput("Drive/OnboardClosedLoop", onboardClosedLoop);
+
+    odometryThread.updateInputs(odometryInputs);
+    Logger.processInputs("Drive/OdometryThread", odometryInputs);
+
+    // Until the gyro is calibrated and zeroed its heading is meaningless, and the
+    // zero makes it jump. Once it's ready the estimator is restarted from whatever
+    // pose it was set to with the zeroed heading, and this cycle's samples, read
+    // before the zero, are thrown away
+    boolean gyroReady = gyroInputs.ready;
+    if (gyroReady && !wasGyroReady) {
+      poseHistory.clear();
+      slipDetector.reset();
+      poseEstimator.resetPosition(getHeading(), getModulePositions(), getPose());
+    }
+    boolean fuse = gyroReady && wasGyroReady;
+    wasGyroReady = gyroReady;
+    Logger.recordOutput("Odometry/GyroReady", gyroReady);
+
+    // Update the odometry with every sample the odometry thread took since the last
+    // cycle, so the estimator's history is filled in before vision is added
+    slipDetector.clearCycle();
+
+    int drainedSamples = odometryInputs.timestamps.length;
+    for (int s = 0; fuse && s < drainedSamples; s++) {
+      addOdometrySample(odometryInputs.timestamps[s], odometryInputs.headingsRad[s],
+          odometryInputs.driveDistancesMeters, odometryInputs.steerAnglesRad, s * modules.length);
+    }
+
+    // fall back to a single update if the thread hasn't produced anything yet, but
+    // not while it's holding samples back for an encoder reset, this cycle's
+    // snapshot could still be from before it
+    if (fuse && drainedSamples == 0 && !odometryInputs.waitingForEncoderReset) {
+      for (int i = 0; i < modules.length; i++) {
+        fallbackDistances[i] = -modules[i].getCurrentDistanceMetersPerSecond();
+        fallbackAngles[i] = modules[i].getIntegratedAngleRadians();
+      }
+      addOdometrySample(Timer.getFPGATimestamp(), getHeadingRadians(), fallbackDistances, fallbackAngles, 0);
+    }
+
+    slipDetector.checkAcceleration(Math.hypot(gyroInputs.accelXMetersPerSecSq, gyroInputs.accelYMetersPerSecSq));
+    boolean slipping = slipDetector.isSlipping(Timer.getFPGATimestamp());
+
+    Logger.recordOutput("Odometry/SamplesDrained", drainedSamples);
+    Logger.recordOutput("Odometry/Slip/ModulesReplaced", slipDetector.getSlippedThisCycle());
+    Logger.recordOutput("Odometry/Slip/MaxResidual", slipDetector.getMaxResidualThisCycle());
+    Logger.recordOutput("Odometry/Slip/Collision", slipDetector.isCollisionThisCycle());
+    Logger.recordOutput("Odometry/Slip/WheelSpin", slipDetector.isWheelSpinThisCycle());
+    Logger.recordOutput("Odometry/Slip/EventCount", slipDetector.getEventCount());
+    Logger.recordOutput("Odometry/Slip/Active", slipping);
+
     // Add vision to pose estimator
-    final Optional<EstimatedRobotPose> optionalEstimatedPose = vision
-        .getEstimatedGlobalPose(poseEstimator.getEstimatedPosition());
+    // every camera's new estimate, oldest first so the estimator replays its
+    // history in order
+    final List<EstimatedRobotPose> estimatedPoses = vision.getEstimatedGlobalPoses();
     // if (optionalEstimatedPose.isPresent() && RobotState.isTeleop()) {
     // final EstimatedRobotPose estimatedPose = optionalEstimatedPose.get();
     // poseEstimator.addVisionMeasurement(estimatedPose.estimatedPose.toPose2d(),
@@ -160,17 +361,44 @@ public class SwerveBase extends SubsystemBase {
 
     // }
 
-    if (optionalEstimatedPose.isPresent()) {
-      final EstimatedRobotPose estimatedPose = optionalEstimatedPose.get();
+    // the cameras are still read every cycle so their inputs are logged
+    int fusedPoseCount = fuse ? estimatedPoses.size() : 0;
+    for (int i = 0; i < fusedPoseCount; i++) {
+      final EstimatedRobotPose estimatedPose = estimatedPoses.get(i);
+      // trust each estimate by its tag count, distance and ambiguity, and lean on
+      // vision harder while the wheels can't be trusted. Null, and rejected by the
+      // gate, when there are no usable tags
+      Matrix<N3, N1> stdDevs = vision.getEstimationStdDevs(estimatedPose);
+
+      // compare against where the robot was estimated to be when the frame was
+      // taken. While slipping that estimate is what's wrong, so only the sanity
+      // checks are run and vision gets to correct it
+      boolean hasPrediction = !slipping && poseHistory.getPoseAt(estimatedPose.timestampSeconds, gatePose);
+      VisionGate.Result gateResult = visionGate.check(estimatedPose.estimatedPose,
+          estimatedPose.timestampSeconds, stdDevs, hasPrediction ? gatePose : null);
+      if (gateResult != VisionGate.Result.ACCEPTED) {
+        continue;
+      }
+
+      if (slipping) {
+        stdDevs = stdDevs.times(SwerveBaseConstants.slipVisionStdDevScale);
+      }
       poseEstimator.addVisionMeasurement(estimatedPose.estimatedPose.toPose2d(),
-          estimatedPose.timestampSeconds);
+          estimatedPose.timestampSeconds, stdDevs);
 
     }
 
-    // Update the odometry of the swerve drive using the wheel encoders and gyro in
-    // the periodic block every 20 ms
-    poseEstimator.update(
-        getHeading(), getModulePositions());
+    // the history gets the fused pose, after this cycle's vision corrections, as
+    // of the newest odometry sample
+    if (fuse) {
+      Pose2d fusedPose = poseEstimator.getEstimatedPosition();
+      poseHistory.addSample(lastOdometryTimestamp, fusedPose.getX(), fusedPose.getY(),
+          fusedPose.getRotation().getRadians());
+    }
+
+    for (VisionGate.Result result : VisionGate.Result.values()) {
+      Logger.recordOutput(visionGateLogKeys[result.ordinal()], visionGate.getCount(result));
+    }
 
     // if (Math.abs(poseEstimator.getEstimatedPosition().getRotation().getDegrees())
     // >= 178) {
@@ -209,6 +437,83 @@ public class SwerveBase extends SubsystemBase {
 
   }
 
+  /**
+   * Runs one odometry sample through the slip detector and into the pose
+   * estimator
+   * Parameters:
+   * sample timestamp in seconds
+   * heading in radians
+   * drive distances and steer angles, read from offset to offset + module count
+   */
+  private void addOdometrySample(double timestampSeconds, double headingRadians, double[] driveDistances,
+      double[] steerAngles, int offset) {
+
+    slipDetector.addSample(timestampSeconds, headingRadians, driveDistances, steerAngles, offset,
+        filteredDistances);
+
+    for (int i = 0; i < samplePositions.length; i++) {
+      samplePositions[i].distanceMeters = filteredDistances[i];
+      samplePositions[i].angle = new Rotation2d(steerAngles[offset + i]);
+    }
+    if (resyncEstimator) {
+      poseEstimator.resetPosition(new Rotation2d(headingRadians), samplePositions,
+          poseEstimator.getEstimatedPosition());
+      resyncEstimator = false;
+    } else {
+      poseEstimator.updateWithTime(timestampSeconds, new Rotation2d(headingRadians), samplePositions);
+    }
+    lastOdometryTimestamp = timestampSeconds;
+
+  }
+
+  @Override
+  public void simulationPeriodic() {
+
+    for (SwerveModule module : modules) {
+      module.updateSim(0.02);
+    }
+
+    // turn the simulated gyro by however much the modules turned the robot, read
+    // the same way the odometry thread reads them. Least-squares forward
+    // kinematics on the distance deltas, same result as kinematics.toTwist2d()
+    // without building the position arrays
+    double sumDx = 0;
+    double sumDy = 0;
+    double sumDtheta = 0;
+    for (int i = 0; i < modules.length; i++) {
+      double distance = -modules[i].readCurrentDistanceMeters();
+      double angle = modules[i].readIntegratedAngleRadians();
+      double delta = distance - lastSimDistances[i];
+      lastSimDistances[i] = distance;
+
+      double moduleDx = delta * Math.cos(angle);
+      double moduleDy = delta * Math.sin(angle);
+      sumDx += moduleDx;
+      sumDy += moduleDy;
+      sumDtheta += moduleCenteredX[i] * moduleDy - moduleCenteredY[i] * moduleDx;
+    }
+    if (hasLastSimDistances) {
+      simTwist.dtheta = sumDtheta / moduleRadiusSquaredSum;
+      simTwist.dx = sumDx / modules.length + simTwist.dtheta * moduleCentroidY;
+      simTwist.dy = sumDy / modules.length - simTwist.dtheta * moduleCentroidX;
+      gyroIO.updateSim(simTwist, 0.02);
+      // Pose2d is immutable, so this one is still new every step
+      simulatedPose = simulatedPose.exp(simTwist);
+    }
+    hasLastSimDistances = true;
+
+    vision.updateSim(simulatedPose);
+    Logger.recordOutput("Drive/SimulatedPose", simulatedPose);
+
+  }
+
+  // stops sampling odometry, for tests that build a SwerveBase
+  void stopOdometryThread() {
+
+    odometryThread.stop();
+
+  }
+
   public void configureAutoBuilder() {
 
     // Configure the AutoBuilder last
@@ -231,11 +536,7 @@ public class SwerveBase extends SubsystemBase {
           // This will flip the path being followed to the red side of the field.
           // THE ORIGIN WILL REMAIN ON THE BLUE SIDE
 
-          var alliance = DriverStation.getAlliance();
-          if (alliance.isPresent()) {
-            return alliance.get() == DriverStation.Alliance.Red;
-          }
-          return false;
+          return FieldGeometry.isRed();
         },
         this);
 
@@ -251,20 +552,22 @@ public class SwerveBase extends SubsystemBase {
    * @param chassisSpeeds The desired ChassisSpeeds. Should be robot relative.
    */
   public void driveRobotRelative(ChassisSpeeds chassisSpeeds) {
-    ChassisSpeeds discreteSpeeds = ChassisSpeeds.discretize(chassisSpeeds, 0.02);
-    SwerveModuleState[] newStates = Constants.SwerveBaseConstants.kinematics.toSwerveModuleStates(discreteSpeeds);
-    SwerveDriveKinematics.desaturateWheelSpeeds(newStates, Constants.SwerveBaseConstants.maxSpeed);
+    discretize(chassisSpeeds.vxMetersPerSecond, chassisSpeeds.vyMetersPerSecond,
+        chassisSpeeds.omegaRadiansPerSecond, 0.02);
     // commanded.set(newStates);
-    setModuleStates(newStates);
+    setChassisSpeeds(discreteVx, discreteVy, discreteOmega);
 
   }
 
   public void driveFieldRelative(ChassisSpeeds chassisSpeeds) {
-    ChassisSpeeds discreteSpeeds = ChassisSpeeds.discretize(chassisSpeeds, 0.02);
-    discreteSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(discreteSpeeds, getHeading());
-    SwerveModuleState[] newStates = Constants.SwerveBaseConstants.kinematics.toSwerveModuleStates(discreteSpeeds);
-    SwerveDriveKinematics.desaturateWheelSpeeds(newStates, Constants.SwerveBaseConstants.maxSpeed);
-    setModuleStates(newStates);
+    discretize(chassisSpeeds.vxMetersPerSecond, chassisSpeeds.vyMetersPerSecond,
+        chassisSpeeds.omegaRadiansPerSecond, 0.02);
+
+    // same as ChassisSpeeds.fromRobotRelativeSpeeds(discreteSpeeds, getHeading())
+    double heading = getHeadingRadians();
+    double cos = Math.cos(heading);
+    double sin = Math.sin(heading);
+    setChassisSpeeds(discreteVx * cos - discreteVy * sin, discreteVx * sin + discreteVy * cos, discreteOmega);
 
   }
 
@@ -274,11 +577,27 @@ public class SwerveBase extends SubsystemBase {
    * @return The robot-relative {@link ChassisSpeeds}.
    */
   public ChassisSpeeds getRobotRelativeSpeeds() {
-    ChassisSpeeds chassisSpeeds = ChassisSpeeds.fromFieldRelativeSpeeds(
-        Constants.SwerveBaseConstants.kinematics.toChassisSpeeds(getStates()),
-        getHeading());
 
-    return chassisSpeeds;
+    // least-squares forward kinematics, same result as
+    // kinematics.toChassisSpeeds() without building the state array. The drive
+    // encoders read opposite the module's direction, same as getModulePositions()
+    double sumVx = 0;
+    double sumVy = 0;
+    double sumOmega = 0;
+    for (int i = 0; i < modules.length; i++) {
+      double speed = -modules[i].getCurrentVelocityMetersPerSecond();
+      double angle = modules[i].getCanCoderAngleRadians();
+      double moduleVx = speed * Math.cos(angle);
+      double moduleVy = speed * Math.sin(angle);
+      sumVx += moduleVx;
+      sumVy += moduleVy;
+      sumOmega += moduleCenteredX[i] * moduleVy - moduleCenteredY[i] * moduleVx;
+    }
+    double omega = sumOmega / moduleRadiusSquaredSum;
+    double vx = sumVx / modules.length + omega * moduleCentroidY;
+    double vy = sumVy / modules.length - omega * moduleCentroidX;
+
+    return new ChassisSpeeds(vx, vy, omega);
   }
 
   /**
@@ -292,27 +611,76 @@ public class SwerveBase extends SubsystemBase {
   public void drive(double forward, double strafe, double rotation, boolean isFieldRelative) {
 
     /**
-     * ChassisSpeeds object to represent the overall state of the robot
-     * ChassisSpeeds takes a forward and sideways linear value and a rotational
-     * value
+     * the overall state of the robot is a forward and sideways linear value and a
+     * rotational value
      * 
-     * speeds is set to field relative or default (robot relative) based on
-     * parameter
+     * speeds are rotated into the robot frame if they're field relative, same as
+     * ChassisSpeeds.fromFieldRelativeSpeeds()
      */
-    ChassisSpeeds speeds = isFieldRelative
-        ? ChassisSpeeds.fromFieldRelativeSpeeds(
-            forward, strafe, rotation, getHeading())
-        : new ChassisSpeeds(forward, strafe, rotation);
+    double vx = forward;
+    double vy = strafe;
+
+    if (isFieldRelative) {
+      double heading = getHeadingRadians();
+      double cos = Math.cos(heading);
+      double sin = Math.sin(heading);
+      vx = forward * cos + strafe * sin;
+      vy = -forward * sin + strafe * cos;
+    }
 
-    speeds = ChassisSpeeds.discretize(speeds, 0.02);
+    discretize(vx, vy, rotation, 0.02);
 
-    // use kinematics (wheel placements) to convert overall robot state to array of
-    // individual module states
-    SwerveModuleState[] states = SwerveBaseConstants.kinematics.toSwerveModuleStates(speeds);
+    setChassisSpeeds(discreteVx, discreteVy, discreteOmega);
 
-    SwerveDriveKinematics.desaturateWheelSpeeds(states, SwerveBaseConstants.maxSpeed);
+  }
 
-    setModuleStates(states);
+  /**
+   * Primitive version of ChassisSpeeds.discretize()
+   * Writes the result into discreteVx, discreteVy and discreteOmega
+   */
+  private void discretize(double vx, double vy, double omega, double dtSeconds) {
+
+    // twist that gets from the current pose to the pose after driving the
+    // continuous speeds for dtSeconds, same math as Pose2d.log()
+    double dtheta = omega * dtSeconds;
+    double halfDtheta = dtheta / 2.0;
+    double cosMinusOne = Math.cos(dtheta) - 1;
+
+    double halfThetaByTanOfHalfDtheta;
+    if (Math.abs(cosMinusOne) < 1E-9) {
+      halfThetaByTanOfHalfDtheta = 1.0 - 1.0 / 12.0 * dtheta * dtheta;
+    } else {
+      halfThetaByTanOfHalfDtheta = -(halfDtheta * Math.sin(dtheta)) / cosMinusOne;
+    }
+
+    discreteVx = vx * halfThetaByTanOfHalfDtheta + vy * halfDtheta;
+    discreteVy = vy * halfThetaByTanOfHalfDtheta - vx * halfDtheta;
+    discreteOmega = omega;
+
+  }
+
+  /**
+   * Converts robot relative speeds to module speeds and angles with the same math
+   * as kinematics.toSwerveModuleStates() and desaturateWheelSpeeds(), then sends
+   * them to the modules
+   */
+  private void setChassisSpeeds(double vx, double vy, double omega) {
+
+    double maxModuleSpeed = 0;
+    for (int i = 0; i < modules.length; i++) {
+      double moduleVx = vx - omega * moduleY[i];
+      double moduleVy = vy + omega * moduleX[i];
+      desiredSpeeds[i] = Math.hypot(moduleVx, moduleVy);
+      desiredAngles[i] = Math.atan2(moduleVy, moduleVx);
+      maxModuleSpeed = Math.max(maxModuleSpeed, desiredSpeeds[i]);
+    }
+
+    double scale = maxModuleSpeed > SwerveBaseConstants.maxSpeed ? SwerveBaseConstants.maxSpeed / maxModuleSpeed
+        : 1.0;
+
+    for (int i = 0; i < modules.length; i++) {
+      modules[i].setDesiredStateClosedLoop(desiredSpeeds[i] * scale, desiredAngles[i]);
+    }
 
   }
 
@@ -323,16 +691,10 @@ public class SwerveBase extends SubsystemBase {
    */
   public void setModuleStates(SwerveModuleState[] moduleStates) {
 
-    SwerveModuleState[] optimizedModuleStates = new SwerveModuleState[4];
-    optimizedModuleStates[0] = SwerveModule.optimize(frontLeft.getState(), frontLeft.getIntegratedAngle());
-    optimizedModuleStates[1] = SwerveModule.optimize(frontRight.getState(), frontRight.getIntegratedAngle());
-    optimizedModuleStates[2] = SwerveModule.optimize(rearLeft.getState(), rearLeft.getIntegratedAngle());
-    optimizedModuleStates[3] = SwerveModule.optimize(rearRight.getState(), rearRight.getIntegratedAngle());
-
-    frontLeft.setDesiredStateClosedLoop(moduleStates[0]);
-    frontRight.setDesiredStateClosedLoop(moduleStates[1]);
-    rearLeft.setDesiredStateClosedLoop(moduleStates[2]);
-    rearRight.setDesiredStateClosedLoop(moduleStates[3]);
+    for (int i = 0; i < modules.length; i++) {
+      modules[i].setDesiredStateClosedLoop(moduleStates[i].speedMetersPerSecond,
+          moduleStates[i].angle.getRadians());
+    }
 
   }
 
@@ -378,11 +740,79 @@ public class SwerveBase extends SubsystemBase {
 
   }
 
+  /**
+   * Returns where the robot was at a timestamp, interpolated between the fused
+   * poses of each cycle from the last SwerveBaseConstants.poseHistorySeconds
+   * Timestamps outside the history are clamped to its ends
+   * Parameters:
+   * FPGA timestamp in seconds
+   */
+  public Optional<Pose2d> getPoseAt(double timestampSeconds) {
+
+    if (!poseHistory.getPoseAt(timestampSeconds, poseLookup)) {
+      return Optional.empty();
+    }
+    return Optional.of(new Pose2d(poseLookup[0], poseLookup[1], new Rotation2d(poseLookup[2])));
+
+  }
+
+  /**
+   * Same as getPoseAt(double) without allocating
+   * Parameters:
+   * FPGA timestamp in seconds
+   * array of at least 3 that the x, y and theta get written into
+   * Returns false if there's no history yet
+   */
+  public boolean getPoseAt(double timestampSeconds, double[] poseOut) {
+
+    return poseHistory.getPoseAt(timestampSeconds, poseOut);
+
+  }
+
+  /**
+   * Field relative velocity from the fused pose history, over the last
+   * SwerveBaseConstants.aimVelocityLookbackSeconds before the newest sample, or
+   * less if the history doesn't go back that far
+   * Parameters:
+   * array of at least 2 that the x and y velocity in m/s get written into
+   * Returns false, and writes zeros, if there isn't enough history yet
+   */
+  public boolean getFieldVelocity(double[] velocityOut) {
+
+    // both ends come from the history, so the time between them is exact.
+    // getPose() is as of the last odometry sample, not the current time
+    double newestTimestamp = poseHistory.getNewestTimestamp();
+    double pastTimestamp = Math.max(newestTimestamp - SwerveBaseConstants.aimVelocityLookbackSeconds,
+        poseHistory.getOldestTimestamp());
+    double dt = newestTimestamp - pastTimestamp;
+
+    if (poseHistory.isEmpty() || dt < 1E-3) {
+      velocityOut[0] = 0;
+      velocityOut[1] = 0;
+      return false;
+    }
+
+    poseHistory.getPoseAt(newestTimestamp, velocityNewestPose);
+    poseHistory.getPoseAt(pastTimestamp, velocityPastPose);
+    velocityOut[0] = (velocityNewestPose[0] - velocityPastPose[0]) / dt;
+    velocityOut[1] = (velocityNewestPose[1] - velocityPastPose[1]) / dt;
+    return true;
+
+  }
+
   // reset the current pose to a desired pose
   public void resetOdometry(Pose2d pose) {
 
     // odometry.resetPosition(getHeading(), getModulePositions(), pose);
 
+    // samples taken before the reset are relative to the old pose
+    odometryThread.clear();
+    poseHistory.clear();
+    slipDetector.reset();
+
+    // the simulated robot gets placed wherever the pose is reset to, like at the
+    // start of an auto
+    simulatedPose = pose;
     poseEstimator.resetPosition(getHeading(), getModulePositions(), pose);
 
   }
@@ -390,6 +820,12 @@ public class SwerveBase extends SubsystemBase {
   // reset the measured distance driven for each module
   public void resetDriveDistances() {
 
+    // the SPARK MAXs apply the reset a few status frames later, the odometry
+    // thread holds samples back until they read it
+    odometryThread.clearForEncoderReset();
+    slipDetector.reset();
+    resyncEstimator = true;
+    hasLastSimDistances = false;
     frontLeft.resetDistance();
     frontRight.resetDistance();
     rearLeft.resetDistance();
@@ -400,22 +836,25 @@ public class SwerveBase extends SubsystemBase {
   // get the current heading of the robot based on the gyro
   public Rotation2d getHeading() {
 
-    return Rotation2d.fromDegrees(-navX.getYaw());
+    return new Rotation2d(getHeadingRadians());
+
+  }
+
+  // heading in radians, without allocating a Rotation2d
+  public double getHeadingRadians() {
+
+    return gyroInputs.yawPositionRad;
 
   }
 
   /** Zeroes the heading of the robot. */
   public void zeroHeading() {
-    navX.reset();
+    gyroIO.zeroYaw();
 
     // var pose = this.poseEstimator.getEstimatedPosition();
     // pose = pose.rotateBy(navX.getRotation2d().times(-1));
   }
 
-  public AHRS getNavX() {
-    return navX;
-  }
-
   public void stopModules() {
     frontLeft.stop();
     frontRight.stop();
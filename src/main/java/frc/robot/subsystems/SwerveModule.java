@@ -1,13 +1,8 @@
 package frc.robot.subsystems;
 
-import com.ctre.phoenix6.configs.CANcoderConfiguration;
-import com.ctre.phoenix6.hardware.CANcoder;
-import com.ctre.phoenix6.signals.AbsoluteSensorRangeValue;
-import com.ctre.phoenix6.signals.SensorDirectionValue;
-import com.revrobotics.CANSparkMax;
-import com.revrobotics.RelativeEncoder;
-import com.revrobotics.CANSparkBase.IdleMode;
+import org.littletonrobotics.junction.Logger;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
@@ -22,6 +17,9 @@ public class SwerveModule extends SubsystemBase {
    * A module's state is measured by a CANCoder for the absolute position,
    * integrated CANEncoder for relative position
    * for both rotation and linear movement
+   * 
+   * The hardware is read once per cycle through a ModuleIO, and everything below
+   * runs off that snapshot
    */
 
   public PIDController rotationController;
@@ -36,84 +34,82 @@ public class SwerveModule extends SubsystemBase {
   public static double angularSetpoint = 0;
   public static double actualAngle = 0;
 
-  private final CANSparkMax driveMotor;
-  private final CANSparkMax rotationMotor;
+  private final ModuleIO io;
+  private final ModuleIOInputsAutoLogged inputs = new ModuleIOInputsAutoLogged();
+  private final String inputsLogKey;
+  private final String velocityErrorLogKey;
+  private final String angleErrorLogKey;
 
-  private final PIDController driveController = new PIDController(SwerveModuleConstants.drivekP, 0, 0);
-
-  public CANSparkMax getDriveMotor() {
-    return driveMotor;
-  }
-
-  public CANSparkMax getRotationMotor() {
-    return rotationMotor;
-  }
-
-  private final RelativeEncoder driveEncoder;
-  private final RelativeEncoder rotationEncoder;
+  // true runs the drive and steer loops on the SPARK MAXs, false runs them here
+  private boolean onboardClosedLoop = SwerveModuleConstants.useOnboardClosedLoop;
 
-  private final CANcoder canCoder;
+  // this module's last commanded setpoints, for logging tracking error
+  private boolean hasSetpoint = false;
+  private double lastVelocitySetpoint = 0;
+  private double lastAngleSetpoint = 0;
 
-  // absolute offset for the CANCoder so that the wheels can be aligned when the
-  // robot is turned on
-  private final Rotation2d offset;
-
-  public SwerveModule(int moduleID,
-      int driveMotorId,
-      int rotationMotorId,
-      int canCoderId,
-      double measuredOffsetRadians) {
+  private final PIDController driveController = new PIDController(SwerveModuleConstants.drivekP, 0, 0);
 
-    driveMotor = new CANSparkMax(driveMotorId, com.revrobotics.CANSparkLowLevel.MotorType.kBrushless);
-    rotationMotor = new CANSparkMax(rotationMotorId, com.revrobotics.CANSparkLowLevel.MotorType.kBrushless);
+  public SwerveModule(int moduleID, ModuleIO io) {
 
-    driveEncoder = driveMotor.getEncoder();
-    rotationEncoder = rotationMotor.getEncoder();
+    this.io = io;
 
     rotationController = new PIDController(SwerveModuleConstants.rotationkP, 0, 0.0);
     rotationController.enableContinuousInput(-Math.PI, Math.PI);
 
-    canCoder = new CANcoder(canCoderId);
+    this.moduleID = moduleID;
+    inputsLogKey = "Drive/Module" + moduleID;
+    velocityErrorLogKey = "Drive/Module" + moduleID + "/VelocityError";
+    angleErrorLogKey = "Drive/Module" + moduleID + "/AngleError";
 
-    offset = new Rotation2d(measuredOffsetRadians);
+  }
 
-    driveMotor.setIdleMode(IdleMode.kBrake);
-    rotationMotor.setIdleMode(IdleMode.kBrake);
+  /**
+   * Reads every module signal once for this cycle
+   * Called by SwerveBase before anything uses the module's state
+   */
+  public void updateInputs() {
+
+    io.updateInputs(inputs);
+    Logger.processInputs(inputsLogKey, inputs);
+
+    // how well last cycle's setpoints were tracked, for comparing the roboRIO and
+    // onboard control modes. The drive motor runs opposite the setpoint sign, see
+    // setDesiredStateClosedLoop
+    if (hasSetpoint) {
+      Logger.recordOutput(velocityErrorLogKey, lastVelocitySetpoint + inputs.driveVelocityMetersPerSec);
+      Logger.recordOutput(angleErrorLogKey,
+          MathUtil.angleModulus(lastAngleSetpoint - getIntegratedAngleRadians()));
+    } else {
+      Logger.recordOutput(velocityErrorLogKey, 0.0);
+      Logger.recordOutput(angleErrorLogKey, 0.0);
+    }
 
-    this.moduleID = moduleID;
+  }
+
+  /**
+   * Selects where the drive velocity and steer position loops run
+   * true for the SPARK MAX onboard PID at 1 kHz, false for the roboRIO at 50 Hz
+   */
+  public void setOnboardClosedLoop(boolean onboardClosedLoop) {
+    this.onboardClosedLoop = onboardClosedLoop;
+  }
+
+  public boolean isOnboardClosedLoop() {
+    return onboardClosedLoop;
+  }
 
-    // set the output of the drive encoder to be in radians for linear measurement
-    // driveEncoder.setPositionConversionFactor(
-    // 2.0 * Math.PI / Swerve.driveGearRatio);
-    driveEncoder.setPositionConversionFactor(SwerveModuleConstants.driveEncoderPositionConversionFactor);
-
-    // set the output of the drive encoder to be in radians per second for velocity
-    // measurement
-    // driveEncoder.setVelocityConversionFactor(
-    // 2.0 * Math.PI / 60 / Swerve.driveGearRatio);
-    driveEncoder.setVelocityConversionFactor(SwerveModuleConstants.driveEncoderPositionConversionFactor / 60.0);
-
-    // set the output of the rotation encoder to be in radians
-    // rotationEncoder.setPositionConversionFactor(2 * Math.PI /
-    // Swerve.angleGearRatio);
-    rotationEncoder.setPositionConversionFactor(SwerveModuleConstants.rotationEncoderPositionConversionFactor);
-
-    // configure the CANCoder to output in unsigned (wrap around from 360 to 0
-    // degrees)
-    // canCoder.configAbsoluteSensorRange(AbsoluteSensorRange.Unsigned_0_to_360);
-    CANcoderConfiguration config = new CANcoderConfiguration();
-    config.MagnetSensor.AbsoluteSensorRange = AbsoluteSensorRangeValue.Unsigned_0To1;
-    config.MagnetSensor.SensorDirection = SensorDirectionValue.CounterClockwise_Positive;
-    canCoder.getConfigurator().apply(config);
-
-    driveMotor.burnFlash();
-    rotationMotor.burnFlash();
+  public void setDriveInverted(boolean inverted) {
+    io.setDriveInverted(inverted);
+  }
 
+  public void setRotationInverted(boolean inverted) {
+    io.setTurnInverted(inverted);
   }
 
   public void resetDistance() {
 
-    driveEncoder.setPosition(0.0);
+    io.resetDrivePosition();
 
   }
 
@@ -124,33 +120,65 @@ public class SwerveModule extends SubsystemBase {
 
   public double getDriveDistanceRadians() {
 
-    return driveEncoder.getPosition();
+    return inputs.drivePositionMeters;
 
   }
 
   public Rotation2d getCanCoderAngle() {
 
-    // double unsignedAngle =
-    // (Units.degreesToRadians(canCoder.getAbsolutePosition()) -
-    // offset.getRadians())
-    // % (2 * Math.PI);
+    return new Rotation2d(getCanCoderAngleRadians());
+
+  }
 
-    double unsignedAngle = (Math.PI * 2 *
-        canCoder.getAbsolutePosition().getValueAsDouble()) - offset.getRadians()
-            % (2 * Math.PI);
+  // CANCoder angle minus the offset, without allocating a Rotation2d
+  public double getCanCoderAngleRadians() {
 
-    return new Rotation2d(unsignedAngle);
+    return inputs.turnAbsolutePositionRad;
 
   }
 
   public Rotation2d getIntegratedAngle() {
 
-    double unsignedAngle = rotationEncoder.getPosition() % (2 * Math.PI);
+    return new Rotation2d(getIntegratedAngleRadians());
+
+  }
+
+  // integrated angle wrapped to [0, 2pi), without allocating a Rotation2d
+  public double getIntegratedAngleRadians() {
+
+    return wrapAngle(inputs.turnIntegratedPositionRad);
+
+  }
+
+  /**
+   * Reads the integrated angle straight from the hardware instead of this
+   * cycle's snapshot, for the odometry thread
+   */
+  public double readIntegratedAngleRadians() {
+
+    return wrapAngle(io.readTurnPositionRad());
+
+  }
+
+  /**
+   * Reads the drive distance straight from the hardware instead of this cycle's
+   * snapshot, for the odometry thread
+   */
+  public double readCurrentDistanceMeters() {
+
+    return io.readDrivePositionMeters();
+
+  }
+
+  // wraps an angle to [0, 2pi)
+  private static double wrapAngle(double angleRadians) {
+
+    double unsignedAngle = angleRadians % (2 * Math.PI);
 
     if (unsignedAngle < 0)
       unsignedAngle += 2 * Math.PI;
 
-    return new Rotation2d(unsignedAngle);
+    return unsignedAngle;
 
   }
 
@@ -163,12 +191,12 @@ public class SwerveModule extends SubsystemBase {
   public double getCurrentVelocityMetersPerSecond() {
 
     // return driveEncoder.getVelocity() * (Swerve.wheelDiameter / 2.0);
-    return driveEncoder.getVelocity();
+    return inputs.driveVelocityMetersPerSec;
 
   }
 
   public double getCurrentDistanceMetersPerSecond() {
-    return driveEncoder.getPosition();
+    return inputs.drivePositionMeters;
     // return driveEncoder.getPosition() * (Swerve.wheelDiameter / 2.0);
   }
 
@@ -237,7 +265,8 @@ public class SwerveModule extends SubsystemBase {
   // measured by the CANCoder
   public void initRotationOffset() {
 
-    rotationEncoder.setPosition(getCanCoderAngle().getRadians());
+    updateInputs();
+    io.setTurnPosition(getCanCoderAngleRadians());
 
   }
 
@@ -248,18 +277,39 @@ public class SwerveModule extends SubsystemBase {
    * Uses PID and a feedforward to control the output
    */
   public void setDesiredStateClosedLoop(SwerveModuleState unoptimizedDesiredState) {
-    if (Math.abs(unoptimizedDesiredState.speedMetersPerSecond) < 0.001) {
+    setDesiredStateClosedLoop(unoptimizedDesiredState.speedMetersPerSecond,
+        unoptimizedDesiredState.angle.getRadians());
+  }
+
+  /**
+   * Same as setDesiredStateClosedLoop(SwerveModuleState) but takes the speed and
+   * angle as primitives, so the drive path doesn't allocate
+   * Parameters:
+   * desired linear speed in meters per second
+   * desired module angle in radians
+   */
+  public void setDesiredStateClosedLoop(double speedMetersPerSecond, double angleRadians) {
+    if (Math.abs(speedMetersPerSecond) < 0.001) {
       stop();
       return;
     }
 
-    SwerveModuleState optimizedDesiredState = optimize(unoptimizedDesiredState, getIntegratedAngle());
+    hasSetpoint = true;
+
+    actualAngle = getIntegratedAngleRadians();
 
-    angularSetpoint = optimizedDesiredState.angle.getRadians();
+    // same as optimize(), without building a new SwerveModuleState
+    double targetAngle = placeInAppropriate0To360Scope(actualAngle, angleRadians);
+    double targetSpeed = speedMetersPerSecond;
+    double delta = targetAngle - actualAngle;
+    if (Math.abs(delta) > (Math.PI / 2)) {
+      targetSpeed = -targetSpeed;
+      targetAngle = delta > Math.PI / 2 ? (targetAngle - Math.PI) : (targetAngle + Math.PI);
+    }
 
-    actualAngle = getIntegratedAngle().getRadians();
+    angularSetpoint = targetAngle;
 
-    velolictySetpoint = optimizedDesiredState.speedMetersPerSecond;
+    velolictySetpoint = targetSpeed;
 
     currentDriveVelocity = getCurrentVelocityMetersPerSecond();
 
@@ -268,21 +318,36 @@ public class SwerveModule extends SubsystemBase {
     feedForwardOutputVoltage = (SwerveModuleConstants.driveFF.calculate(velolictySetpoint));
     // driveOutput = (DrivePIDOutput + feedForwardOutputVoltage);
 
-    rotationMotor.set(rotationController.calculate(actualAngle, angularSetpoint));
-    // driveMotor.setVoltage(-driveOutput);
-    driveMotor.setVoltage(-feedForwardOutputVoltage);
+    lastVelocitySetpoint = velolictySetpoint;
+    lastAngleSetpoint = angularSetpoint;
+
+    if (onboardClosedLoop) {
+      // same signs as the roboRIO mode, the controller wraps the angle itself
+      io.setTurnAngle(wrapAngle(angularSetpoint));
+      io.setDriveVelocity(-velolictySetpoint, -feedForwardOutputVoltage);
+    } else {
+      io.setTurnOutput(rotationController.calculate(actualAngle, angularSetpoint));
+      // driveMotor.setVoltage(-driveOutput);
+      io.setDriveVoltage(-feedForwardOutputVoltage);
+    }
 
   }
 
   public void resetEncoders() {
 
-    driveEncoder.setPosition(0);
-    rotationEncoder.setPosition(0);
+    io.resetDrivePosition();
+    io.setTurnPosition(0);
 
   }
 
   public void stop() {
-    driveMotor.set(0);
-    rotationMotor.set(0);
+    hasSetpoint = false;
+    io.stop();
+  }
+
+  // advances a simulated module, SwerveBase calls this so the gyro can be
+  // integrated from the result
+  public void updateSim(double dtSeconds) {
+    io.updateSim(dtSeconds);
   }
 }
\ No newline at end of file
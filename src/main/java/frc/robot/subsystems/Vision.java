@@ -6,42 +6,72 @@ package frc.robot.subsystems;
 
 import edu.wpi.first.apriltag.AprilTagFieldLayout;
 import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Robot;
-import frc.robot.RobotContainer;
+import frc.robot.Constants;
 import frc.robot.Constants.VisionConstants;
+import frc.robot.utils.FieldGeometry;
 
 import java.io.IOException;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.BooleanSupplier;
 
 import org.littletonrobotics.junction.Logger;
 import org.photonvision.EstimatedRobotPose;
-import org.photonvision.PhotonCamera;
 import org.photonvision.PhotonPoseEstimator;
 import org.photonvision.PhotonPoseEstimator.PoseStrategy;
 import org.photonvision.PhotonUtils;
-import org.photonvision.common.hardware.VisionLEDMode;
+import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonTrackedTarget;
 
 public class Vision extends SubsystemBase {
 
-  private PhotonCamera camera;
+  /**
+   * Every camera on the robot, one VisionIO and PhotonPoseEstimator each
+   * All cameras are read in one pass the first time vision is used in a cycle,
+   * only cameras with a new frame run their pose estimator, and the estimates
+   * are handed out oldest first so they go into the pose estimator in order
+   * Camera 0 is the one the aiming and note commands use
+   */
+
+  private static final Comparator<EstimatedRobotPose> byTimestamp = Comparator
+      .comparingDouble(pose -> pose.timestampSeconds);
+
+  private final VisionIO[] io;
+  private final VisionIO.VisionIOInputs[] inputs;
+  private final PhotonPoseEstimator[] photonPoseEstimators;
+  private final String[] inputsLogKeys;
+
   AprilTagFieldLayout aprilTagFieldLayout;
-  PhotonPoseEstimator photonPoseEstimator;
-  public Pose2d speakerPosition = RobotContainer.speakerPose;// new Pose2d(-0.0381, 5.547868, new Rotation2d());
   public double distanceToSpeakerFieldToCamera = 0;
 
   public Transform3d fieldToCamera = new Transform3d();
 
+  // cycle the cameras were last read in, so they're only read once per cycle
+  private long latestResultCycle = -1;
+
+  // capture time of the last frame from each camera handed to the pose
+  // estimator, so the same frame is never fused twice
+  private final double[] lastFusedFrameTimestamps;
+
+  // this cycle's new pose estimates from every camera, oldest first
+  private final List<EstimatedRobotPose> estimatedPoses = new ArrayList<>();
+
   public static Vision instance;
 
   public static Vision getInstance() {
@@ -51,9 +81,34 @@ public class Vision extends SubsystemBase {
     return instance;
   }
 
-  public Vision() {
-
-    camera = new PhotonCamera("hhCam");
+  private Vision() {
+
+    int cameraCount = VisionConstants.cameraNames.length;
+    io = new VisionIO[cameraCount];
+    inputs = new VisionIO.VisionIOInputs[cameraCount];
+    photonPoseEstimators = new PhotonPoseEstimator[cameraCount];
+    lastFusedFrameTimestamps = new double[cameraCount];
+    inputsLogKeys = new String[cameraCount];
+
+    for (int i = 0; i < cameraCount; i++) {
+      switch (Constants.getMode()) {
+        case REAL:
+          io[i] = new VisionIOPhotonVision(VisionConstants.cameraNames[i]);
+          break;
+
+        case SIM:
+          io[i] = new VisionIOSim(VisionConstants.cameraNames[i], VisionConstants.robotToCams[i]);
+          break;
+
+        default:
+          io[i] = new VisionIO() {
+          };
+          break;
+      }
+      inputs[i] = new VisionIO.VisionIOInputs();
+      inputsLogKeys[i] = "Vision/Camera" + i;
+      lastFusedFrameTimestamps[i] = -1;
+    }
 
     try {
 
@@ -73,16 +128,136 @@ public class Vision extends SubsystemBase {
       e.printStackTrace();
     }
 
-    // Construct PhotonPoseEstimator
-    photonPoseEstimator = new PhotonPoseEstimator(aprilTagFieldLayout,
-        PoseStrategy.MULTI_TAG_PNP_ON_COPROCESSOR, camera, VisionConstants.robotToCam);
+    // Construct a PhotonPoseEstimator for each camera
+    for (int i = 0; i < cameraCount; i++) {
+      photonPoseEstimators[i] = new PhotonPoseEstimator(aprilTagFieldLayout,
+          PoseStrategy.MULTI_TAG_PNP_ON_COPROCESSOR, VisionConstants.robotToCams[i]);
+
+      photonPoseEstimators[i].setMultiTagFallbackStrategy(PoseStrategy.LOWEST_AMBIGUITY);
+    }
+
+  }
+
+  /**
+   * Reads every camera and estimates a pose from each new frame, the first time
+   * it's called in a cycle
+   */
+  private void updateResults() {
+    long cycle = Logger.getTimestamp();
+    if (cycle == latestResultCycle) {
+      return;
+    }
+    latestResultCycle = cycle;
+
+    estimatedPoses.clear();
+
+    for (int i = 0; i < io.length; i++) {
+      io[i].updateInputs(inputs[i]);
+      Logger.processInputs(inputsLogKeys[i], inputs[i]);
+
+      double frameTimestamp = inputs[i].result.getTimestampSeconds();
+      if (frameTimestamp <= lastFusedFrameTimestamps[i]) {
+        continue;
+      }
+      lastFusedFrameTimestamps[i] = frameTimestamp;
+
+      Optional<EstimatedRobotPose> estimatedPose = photonPoseEstimators[i].update(inputs[i].result);
+      if (estimatedPose.isPresent()) {
+        estimatedPoses.add(estimatedPose.get());
+      }
+    }
+
+    estimatedPoses.sort(byTimestamp);
+  }
+
+  /**
+   * Returns this cycle's pipeline result from camera 0
+   * The cameras are only read the first time vision is used in a cycle, later
+   * calls get the same result
+   */
+  public PhotonPipelineResult getLatestResult() {
+    return getLatestResult(0);
+  }
+
+  // this cycle's pipeline result from a camera
+  public PhotonPipelineResult getLatestResult(int cameraIndex) {
+    updateResults();
+    return inputs[cameraIndex].result;
+  }
+
+  /**
+   * Std devs to fuse an estimate with, based on how much it can be trusted
+   * Close multi-tag estimates get small std devs so they pull the pose in
+   * quickly, far or ambiguous single tags get large ones so they barely move it
+   * Returns null when the estimate shouldn't be fused at all, because none of its
+   * tags are on the field layout or its only tag is past maxSingleTagDistance
+   * Parameters:
+   * an estimate from getEstimatedGlobalPoses()
+   */
+  public Matrix<N3, N1> getEstimationStdDevs(EstimatedRobotPose estimatedPose) {
+    Translation2d robotTranslation = estimatedPose.estimatedPose.toPose2d().getTranslation();
+
+    int tagCount = 0;
+    double totalDistance = 0;
+    double totalAmbiguity = 0;
+    for (PhotonTrackedTarget target : estimatedPose.targetsUsed) {
+      var tagPose = aprilTagFieldLayout.getTagPose(target.getFiducialId());
+      if (tagPose.isEmpty()) {
+        continue;
+      }
+      tagCount++;
+      totalDistance += tagPose.get().toPose2d().getTranslation().getDistance(robotTranslation);
+      totalAmbiguity += Math.max(target.getPoseAmbiguity(), 0);
+    }
+
+    if (tagCount == 0) {
+      return null;
+    }
+
+    double averageDistance = totalDistance / tagCount;
+    double distanceScale = 1 + averageDistance * averageDistance / VisionConstants.distanceStdDevScale;
 
-    photonPoseEstimator.setMultiTagFallbackStrategy(PoseStrategy.LOWEST_AMBIGUITY);
+    boolean multiTag = tagCount > 1 && (estimatedPose.strategy == PoseStrategy.MULTI_TAG_PNP_ON_COPROCESSOR
+        || estimatedPose.strategy == PoseStrategy.MULTI_TAG_PNP_ON_RIO);
 
+    if (multiTag) {
+      return VisionConstants.MULTI_TAG_STDS.times(distanceScale);
+    }
+
+    if (averageDistance > VisionConstants.maxSingleTagDistance) {
+      return null;
+    }
+
+    double ambiguityScale = 1 + (totalAmbiguity / tagCount) * VisionConstants.ambiguityStdDevScale;
+    return VisionConstants.SINGLE_TAG_STDS.times(distanceScale * ambiguityScale);
+  }
+
+  /**
+   * Renders the simulated cameras from the simulated robot's true pose, called
+   * from SwerveBase.simulationPeriodic()
+   */
+  public void updateSim(Pose2d robotPose) {
+    for (VisionIO camera : io) {
+      camera.updateSim(robotPose);
+    }
   }
 
-  public Optional<EstimatedRobotPose> getEstimatedGlobalPose(Pose2d prevEstimatedRobotPose) {
-    return photonPoseEstimator.update();
+  public AprilTagFieldLayout getFieldLayout() {
+    return aprilTagFieldLayout;
+  }
+
+  public int getCameraCount() {
+    return io.length;
+  }
+
+  /**
+   * Returns the robot poses from every camera's new frame this cycle, oldest
+   * first
+   * A frame is only ever returned once, the list is reused every cycle
+   */
+  public List<EstimatedRobotPose> getEstimatedGlobalPoses() {
+    updateResults();
+    return estimatedPoses;
   }
 
   // public Pose2d getSpeakerPose() {
@@ -100,22 +275,9 @@ public class Vision extends SubsystemBase {
   // }
 
   public double getDistanceToSpeakerFieldToCameraInches(Transform3d fieldToCamera) {
-    double x = fieldToCamera.getX();
-    double y = fieldToCamera.getY();
-    Rotation2d theta = fieldToCamera.getRotation().toRotation2d();
-
-    if (RobotContainer.isRed) {
-      // red
-      distanceToSpeakerFieldToCamera = Units
-          .metersToInches(PhotonUtils.getDistanceToPose(new Pose2d(x, y, theta),
-              new Pose2d(16.579342, 5.547868, new Rotation2d(Math.PI))));
-    } else {
-
-      // blueChange
-      distanceToSpeakerFieldToCamera = Units
-          .metersToInches(PhotonUtils.getDistanceToPose(new Pose2d(x, y, theta),
-              new Pose2d(-0.0381, 5.547868, new Rotation2d())));
-    }
+    // our alliance's speaker, from the cached field geometry
+    distanceToSpeakerFieldToCamera = Units.metersToInches(
+        FieldGeometry.distanceTo(FieldGeometry.Target.SPEAKER, fieldToCamera.getX(), fieldToCamera.getY()));
 
     return distanceToSpeakerFieldToCamera;
   }
@@ -124,28 +286,32 @@ public class Vision extends SubsystemBase {
     this.distanceToSpeakerFieldToCamera = distanceToSpeakerFieldToCamera;
   }
 
-  public PhotonCamera getCamera() {
-    return camera;
-  }
-
   public BooleanSupplier hasTargetBooleanSupplier() {
-    return () -> camera.getLatestResult().hasTargets();
+    return () -> getLatestResult().hasTargets();
   }
 
   public void takeSnapshot() {
-    camera.takeInputSnapshot();
+    for (VisionIO camera : io) {
+      camera.takeInputSnapshot();
+    }
   }
 
   public void enableLED() {
-    camera.setLED(VisionLEDMode.kOn);
+    for (VisionIO camera : io) {
+      camera.setLED(true);
+    }
   }
 
   public void disableLED() {
-    camera.setLED(VisionLEDMode.kOff);
+    for (VisionIO camera : io) {
+      camera.setLED(false);
+    }
   }
 
   public void setPipeline(int pipelineIndex) {
-    camera.setPipelineIndex(pipelineIndex);
+    for (VisionIO camera : io) {
+      camera.setPipelineIndex(pipelineIndex);
+    }
   }
 
   public void setTagMode() {
@@ -165,7 +331,7 @@ public class Vision extends SubsystemBase {
     // Logger.recordOutput("speaker pos", speakerPosition.toString());
 
     // Query the latest result from PhotonVision
-    var result = camera.getLatestResult(); // returns a PhotoPipeLine Container
+    var result = getLatestResult(); // returns a PhotoPipeLine Container
 
     if (result.getMultiTagResult().estimatedPose.isPresent) {
       fieldToCamera = result.getMultiTagResult().estimatedPose.best;
@@ -0,0 +1,69 @@
+package frc.robot.subsystems;
+
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.inputs.LoggableInputs;
+import org.photonvision.common.dataflow.structures.Packet;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+import edu.wpi.first.math.geometry.Pose2d;
+
+public interface VisionIO {
+
+  /**
+   * Hardware layer for one vision camera
+   * Vision reads every camera into its VisionIOInputs once per cycle
+   */
+
+  /**
+   * The camera's latest pipeline result, logged as the raw PhotonVision packet
+   * (targets, multi-tag result and latency) plus the capture timestamp, which
+   * isn't part of the packet
+   * PhotonPipelineResult isn't supported by @AutoLog, so this is written out by
+   * hand like LocalADStarAK's inputs
+   */
+  public static class VisionIOInputs implements LoggableInputs {
+    public boolean connected = false;
+    public PhotonPipelineResult result = new PhotonPipelineResult();
+
+    @Override
+    public void toLog(LogTable table) {
+      table.put("Connected", connected);
+
+      Packet packet = new Packet(result.getPacketSize());
+      PhotonPipelineResult.serde.pack(packet, result);
+      table.put("Result", packet.getWrittenDataCopy());
+      table.put("TimestampSeconds", result.getTimestampSeconds());
+    }
+
+    @Override
+    public void fromLog(LogTable table) {
+      connected = table.get("Connected", false);
+
+      byte[] data = table.get("Result", new byte[0]);
+      if (data.length > 0) {
+        result = PhotonPipelineResult.serde.unpack(new Packet(data));
+      } else {
+        result = new PhotonPipelineResult();
+      }
+      result.setTimestampSeconds(table.get("TimestampSeconds", 0.0));
+    }
+  }
+
+  /** Reads the camera's latest result into the inputs. */
+  public default void updateInputs(VisionIOInputs inputs) {
+  }
+
+  public default void setPipelineIndex(int pipelineIndex) {
+  }
+
+  public default void setLED(boolean on) {
+  }
+
+  public default void takeInputSnapshot() {
+  }
+
+  // moves a simulated camera to where the simulated robot really is
+  public default void updateSim(Pose2d robotPose) {
+  }
+
+}
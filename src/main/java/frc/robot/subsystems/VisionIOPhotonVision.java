@@ -0,0 +1,39 @@
+package frc.robot.subsystems;
+
+import org.photonvision.PhotonCamera;
+import org.photonvision.common.hardware.VisionLEDMode;
+
+public class VisionIOPhotonVision implements VisionIO {
+
+  /**
+   * A camera running PhotonVision on a coprocessor
+   */
+
+  private final PhotonCamera camera;
+
+  public VisionIOPhotonVision(String cameraName) {
+    camera = new PhotonCamera(cameraName);
+  }
+
+  @Override
+  public void updateInputs(VisionIOInputs inputs) {
+    inputs.connected = camera.isConnected();
+    inputs.result = camera.getLatestResult();
+  }
+
+  @Override
+  public void setPipelineIndex(int pipelineIndex) {
+    camera.setPipelineIndex(pipelineIndex);
+  }
+
+  @Override
+  public void setLED(boolean on) {
+    camera.setLED(on ? VisionLEDMode.kOn : VisionLEDMode.kOff);
+  }
+
+  @Override
+  public void takeInputSnapshot() {
+    camera.takeInputSnapshot();
+  }
+
+}
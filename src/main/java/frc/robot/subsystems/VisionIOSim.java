@@ -0,0 +1,65 @@
+package frc.robot.subsystems;
+
+import org.photonvision.PhotonCamera;
+import org.photonvision.simulation.PhotonCameraSim;
+import org.photonvision.simulation.SimCameraProperties;
+import org.photonvision.simulation.VisionSystemSim;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform3d;
+
+public class VisionIOSim implements VisionIO {
+
+  /**
+   * Simulated PhotonVision camera
+   * photonlib renders the 2024 tags from wherever SwerveBase's simulated robot
+   * actually is and publishes the result the same way a coprocessor would, so
+   * everything downstream runs unchanged
+   * The camera properties are a rough match for a 90 degree global shutter
+   * camera at 30 fps
+   */
+
+  private final PhotonCamera camera;
+  private final PhotonCameraSim cameraSim;
+  private final VisionSystemSim visionSim;
+
+  public VisionIOSim(String cameraName, Transform3d robotToCam) {
+
+    camera = new PhotonCamera(cameraName);
+
+    SimCameraProperties properties = new SimCameraProperties();
+    properties.setCalibration(960, 720, Rotation2d.fromDegrees(90));
+    properties.setCalibError(0.35, 0.10);
+    properties.setFPS(30);
+    properties.setAvgLatencyMs(35);
+    properties.setLatencyStdDevMs(5);
+
+    cameraSim = new PhotonCameraSim(camera, properties);
+
+    AprilTagFieldLayout fieldLayout = AprilTagFields.k2024Crescendo.loadAprilTagLayoutField();
+    visionSim = new VisionSystemSim(cameraName);
+    visionSim.addAprilTags(fieldLayout);
+    visionSim.addCamera(cameraSim, robotToCam);
+
+  }
+
+  @Override
+  public void updateInputs(VisionIOInputs inputs) {
+    inputs.connected = camera.isConnected();
+    inputs.result = camera.getLatestResult();
+  }
+
+  @Override
+  public void setPipelineIndex(int pipelineIndex) {
+    camera.setPipelineIndex(pipelineIndex);
+  }
+
+  @Override
+  public void updateSim(Pose2d robotPose) {
+    visionSim.update(robotPose);
+  }
+
+}
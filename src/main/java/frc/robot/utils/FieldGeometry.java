@@ -0,0 +1,117 @@
+package frc.robot.utils;
+
+import java.util.Optional;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+
+public final class FieldGeometry {
+
+    /**
+     * Where our alliance's scoring and loading locations are on the field
+     * The poses come from the 2024 AprilTag layout and are only recomputed when
+     * updateAlliance() sees the alliance change, so the distance and bearing
+     * queries below are plain math on cached doubles
+     * Poses are in the blue origin field frame and face out into the field, the
+     * same way the tags do
+     */
+
+    public enum Target {
+        SPEAKER,
+        AMP,
+        SOURCE,
+        STAGE
+    }
+
+    // tags that make up each target for each alliance, the target is their
+    // average
+    private static final int[][] blueTags = { { 7 }, { 6 }, { 1, 2 }, { 14, 15, 16 } };
+    private static final int[][] redTags = { { 4 }, { 5 }, { 9, 10 }, { 11, 12, 13 } };
+
+    private static final AprilTagFieldLayout fieldLayout = AprilTagFields.k2024Crescendo.loadAprilTagLayoutField();
+
+    private static final int targetCount = Target.values().length;
+    private static final double[] targetX = new double[targetCount];
+    private static final double[] targetY = new double[targetCount];
+    private static final Pose2d[] targetPoses = new Pose2d[targetCount];
+
+    // blue until the driver station says otherwise
+    private static boolean isRed = false;
+
+    static {
+        computeTargets();
+    }
+
+    private FieldGeometry() {
+    }
+
+    /**
+     * Checks the alliance and recomputes the targets if it changed
+     * Only needs to be called while disabled and at the start of auto and teleop,
+     * the alliance can't change while enabled
+     * Parameters:
+     * alliance to use when the driver station hasn't sent one, true for red
+     */
+    public static void updateAlliance(boolean redIfUnknown) {
+        Optional<Alliance> alliance = DriverStation.getAlliance();
+        boolean red = alliance.isPresent() ? alliance.get() == Alliance.Red : redIfUnknown;
+
+        if (red == isRed) {
+            return;
+        }
+
+        isRed = red;
+        computeTargets();
+    }
+
+    private static void computeTargets() {
+        int[][] tags = isRed ? redTags : blueTags;
+        for (int t = 0; t < targetCount; t++) {
+            double x = 0;
+            double y = 0;
+            double cos = 0;
+            double sin = 0;
+            for (int id : tags[t]) {
+                Pose2d tagPose = fieldLayout.getTagPose(id).get().toPose2d();
+                x += tagPose.getX() / tags[t].length;
+                y += tagPose.getY() / tags[t].length;
+                cos += tagPose.getRotation().getCos();
+                sin += tagPose.getRotation().getSin();
+            }
+            targetX[t] = x;
+            targetY[t] = y;
+            targetPoses[t] = new Pose2d(x, y, new Rotation2d(Math.atan2(sin, cos)));
+        }
+    }
+
+    public static boolean isRed() {
+        return isRed;
+    }
+
+    public static Pose2d getPose(Target target) {
+        return targetPoses[target.ordinal()];
+    }
+
+    public static double getX(Target target) {
+        return targetX[target.ordinal()];
+    }
+
+    public static double getY(Target target) {
+        return targetY[target.ordinal()];
+    }
+
+    // straight line distance from a field position to the target, meters
+    public static double distanceTo(Target target, double x, double y) {
+        return Math.hypot(targetX[target.ordinal()] - x, targetY[target.ordinal()] - y);
+    }
+
+    // field relative angle from a field position to the target, radians
+    public static double bearingTo(Target target, double x, double y) {
+        return Math.atan2(targetY[target.ordinal()] - y, targetX[target.ordinal()] - x);
+    }
+
+}
@@ -0,0 +1,137 @@
+package frc.robot.utils;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.wpilibj.AsynchronousInterrupt;
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.Timer;
+
+public class NoteSensor {
+
+    /**
+     * Optical note sensor on a DIO port, low while a note is in front of it
+     * An AsynchronousInterrupt catches the note arriving, and anything armed with
+     * arm() is stopped from the interrupt thread right then, instead of up to a
+     * cycle later when a command polls isNotePresent()
+     *
+     * The interrupt's hardware timestamp of the edge is kept, and how long after
+     * it the armed stop ran, and how long until the main loop saw the note, are
+     * both added to 1 ms histograms so the two can be compared
+     */
+
+    // 1 ms bins, the last one counts everything longer
+    private static final int histogramBins = 30;
+
+    private final String name;
+    private final DigitalInput input;
+    private final AsynchronousInterrupt interrupt;
+
+    // run once from the interrupt thread the next time a note arrives. Taken with
+    // getAndSet() so an action armed while the last one is being taken isn't lost
+    private final AtomicReference<Runnable> arrivalAction = new AtomicReference<>();
+
+    // guarded by this
+    private double lastArrivalTimestamp = Double.NaN;
+    private double lastInterruptReactionSeconds = Double.NaN;
+    private final long[] interruptReactionHistogram = new long[histogramBins];
+
+    // only used from the main loop
+    private double lastPolledArrivalTimestamp = Double.NaN;
+    private double lastPollReactionSeconds = Double.NaN;
+    private final long[] pollReactionHistogram = new long[histogramBins];
+    private boolean wasPresent = false;
+
+    /**
+     * Parameters:
+     * name to log under
+     * DIO port
+     */
+    public NoteSensor(String name, int channel) {
+        this.name = name;
+        input = new DigitalInput(channel);
+
+        interrupt = new AsynchronousInterrupt(input, (rising, falling) -> onEdge(falling));
+        // the sensor goes low when a note arrives
+        interrupt.setInterruptEdges(false, true);
+        interrupt.enable();
+    }
+
+    // runs on the interrupt's thread
+    private void onEdge(boolean falling) {
+        if (!falling) {
+            return;
+        }
+
+        double arrivalTimestamp = interrupt.getFallingTimestamp();
+
+        Runnable action = arrivalAction.getAndSet(null);
+        if (action != null) {
+            action.run();
+        }
+        double reactedTimestamp = Timer.getFPGATimestamp();
+
+        synchronized (this) {
+            lastArrivalTimestamp = arrivalTimestamp;
+            if (action != null) {
+                lastInterruptReactionSeconds = reactedTimestamp - arrivalTimestamp;
+                interruptReactionHistogram[bin(lastInterruptReactionSeconds)]++;
+            }
+        }
+    }
+
+    public boolean isNotePresent() {
+        return !input.get();
+    }
+
+    /**
+     * Runs something from the interrupt thread the next time a note arrives, used
+     * to stop motors feeding the note. Only the last action armed is run, once
+     * The action has to be safe to call from another thread
+     */
+    public void arm(Runnable action) {
+        arrivalAction.set(action);
+    }
+
+    public void disarm() {
+        arrivalAction.set(null);
+    }
+
+    /**
+     * Times how long polling took to see the latest arrival and logs both
+     * histograms, called once per cycle from the subsystem's periodic()
+     */
+    public void update() {
+        boolean present = isNotePresent();
+
+        double arrivalTimestamp;
+        double interruptReactionSeconds;
+        long[] interruptHistogram;
+        synchronized (this) {
+            arrivalTimestamp = lastArrivalTimestamp;
+            interruptReactionSeconds = lastInterruptReactionSeconds;
+            interruptHistogram = interruptReactionHistogram.clone();
+        }
+
+        // the first cycle polling sees a note that came with a new edge
+        if (present && !wasPresent && !Double.isNaN(arrivalTimestamp)
+                && arrivalTimestamp != lastPolledArrivalTimestamp) {
+            lastPolledArrivalTimestamp = arrivalTimestamp;
+            lastPollReactionSeconds = Timer.getFPGATimestamp() - arrivalTimestamp;
+            pollReactionHistogram[bin(lastPollReactionSeconds)]++;
+        }
+        wasPresent = present;
+
+        Logger.recordOutput(name + "/NotePresent", present);
+        Logger.recordOutput(name + "/InterruptReactionMs", interruptReactionSeconds * 1000.0);
+        Logger.recordOutput(name + "/PollReactionMs", lastPollReactionSeconds * 1000.0);
+        Logger.recordOutput(name + "/InterruptReactionHistogram", interruptHistogram);
+        Logger.recordOutput(name + "/PollReactionHistogram", pollReactionHistogram);
+    }
+
+    private static int bin(double seconds) {
+        return (int) Math.max(0, Math.min(seconds * 1000.0, histogramBins - 1));
+    }
+
+}
@@ -0,0 +1,129 @@
+package frc.robot.utils;
+
+import edu.wpi.first.math.MathUtil;
+
+public class PoseHistory {
+
+    /**
+     * Fixed size ring buffer of timestamped poses, stored as primitives
+     * Answers "where was the robot at time t" with a binary search and a linear
+     * interpolation between the two samples around t, without allocating
+     * Samples have to be added in increasing timestamp order
+     */
+
+    private final double[] timestamps;
+    private final double[] xMeters;
+    private final double[] yMeters;
+    private final double[] thetaRadians;
+
+    private int start = 0;
+    private int count = 0;
+
+    public PoseHistory(int capacity) {
+        timestamps = new double[capacity];
+        xMeters = new double[capacity];
+        yMeters = new double[capacity];
+        thetaRadians = new double[capacity];
+    }
+
+    /**
+     * Adds a pose to the history, overwriting the oldest one when full
+     * Samples that aren't newer than the newest sample are ignored
+     */
+    public void addSample(double timestampSeconds, double x, double y, double theta) {
+        if (count > 0 && timestampSeconds <= timestamps[index(count - 1)]) {
+            return;
+        }
+
+        int i;
+        if (count < timestamps.length) {
+            i = index(count);
+            count++;
+        } else {
+            i = start;
+            start = (start + 1) % timestamps.length;
+        }
+
+        timestamps[i] = timestampSeconds;
+        xMeters[i] = x;
+        yMeters[i] = y;
+        thetaRadians[i] = theta;
+    }
+
+    public void clear() {
+        start = 0;
+        count = 0;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public double getOldestTimestamp() {
+        return count == 0 ? 0.0 : timestamps[start];
+    }
+
+    public double getNewestTimestamp() {
+        return count == 0 ? 0.0 : timestamps[index(count - 1)];
+    }
+
+    /**
+     * Looks up the pose at a timestamp
+     * Timestamps outside of the history are clamped to the oldest or newest sample
+     * Parameters:
+     * timestamp in seconds
+     * array of at least 3 that the x, y and theta get written into
+     * Returns false, and leaves the array alone, if the history is empty
+     */
+    public boolean getPoseAt(double timestampSeconds, double[] poseOut) {
+        if (count == 0) {
+            return false;
+        }
+
+        int oldest = start;
+        int newest = index(count - 1);
+
+        if (timestampSeconds <= timestamps[oldest]) {
+            copy(oldest, poseOut);
+            return true;
+        }
+        if (timestampSeconds >= timestamps[newest]) {
+            copy(newest, poseOut);
+            return true;
+        }
+
+        // last sample at or before the timestamp
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (timestamps[index(mid)] <= timestampSeconds) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        int before = index(low);
+        int after = index(low + 1);
+        double t = (timestampSeconds - timestamps[before]) / (timestamps[after] - timestamps[before]);
+
+        poseOut[0] = xMeters[before] + (xMeters[after] - xMeters[before]) * t;
+        poseOut[1] = yMeters[before] + (yMeters[after] - yMeters[before]) * t;
+        poseOut[2] = MathUtil.angleModulus(
+                thetaRadians[before] + MathUtil.angleModulus(thetaRadians[after] - thetaRadians[before]) * t);
+        return true;
+    }
+
+    private void copy(int i, double[] poseOut) {
+        poseOut[0] = xMeters[i];
+        poseOut[1] = yMeters[i];
+        poseOut[2] = thetaRadians[i];
+    }
+
+    // position in the arrays of the nth oldest sample
+    private int index(int n) {
+        return (start + n) % timestamps.length;
+    }
+
+}
@@ -0,0 +1,104 @@
+package frc.robot.utils;
+
+import org.apache.commons.math3.analysis.interpolation.SplineInterpolator;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+
+public class ShooterLookupTable {
+
+    /**
+     * Shooter RPMs and tilt angle by distance, sampled from the spline through
+     * the regression data once at startup
+     * Lookups index straight into evenly spaced samples and interpolate linearly
+     * between the two around the distance, so they're a multiply and a couple of
+     * array reads, don't allocate and don't print
+     * Distances outside the data are clamped to its ends
+     */
+
+    private final double minDistance;
+    private final double maxDistance;
+    private final double inverseStep;
+
+    private final double[] velocities;
+    private final double[] angles;
+
+    /**
+     * Parameters:
+     * regression distances, increasing
+     * RPMs at each distance
+     * tilt angles at each distance
+     * distance between samples in the table, same units as the distances
+     */
+    public ShooterLookupTable(double[] distances, double[] velocityData, double[] angleData, double step) {
+        SplineInterpolator interpolator = new SplineInterpolator();
+        PolynomialSplineFunction velocityFunction = interpolator.interpolate(distances, velocityData);
+        PolynomialSplineFunction angleFunction = interpolator.interpolate(distances, angleData);
+
+        minDistance = distances[0];
+        maxDistance = distances[distances.length - 1];
+
+        int sampleCount = (int) Math.ceil((maxDistance - minDistance) / step) + 1;
+        // spread the samples evenly so the last one lands exactly on maxDistance
+        double spacing = (maxDistance - minDistance) / (sampleCount - 1);
+        inverseStep = 1.0 / spacing;
+
+        velocities = new double[sampleCount];
+        angles = new double[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            double distance = Math.min(minDistance + i * spacing, maxDistance);
+            velocities[i] = velocityFunction.value(distance);
+            angles[i] = angleFunction.value(distance);
+        }
+    }
+
+    /**
+     * Looks up the shooter state for a distance
+     * Parameters:
+     * distance to the target
+     * array of at least 2 that the RPMs and tilt angle get written into
+     */
+    public void lookup(double distance, double[] stateOut) {
+        double position = position(distance);
+        int i = index(position);
+        double t = position - i;
+
+        stateOut[0] = velocities[i] + (velocities[i + 1] - velocities[i]) * t;
+        stateOut[1] = angles[i] + (angles[i + 1] - angles[i]) * t;
+    }
+
+    public double getVelocity(double distance) {
+        double position = position(distance);
+        int i = index(position);
+        return velocities[i] + (velocities[i + 1] - velocities[i]) * (position - i);
+    }
+
+    public double getAngle(double distance) {
+        double position = position(distance);
+        int i = index(position);
+        return angles[i] + (angles[i + 1] - angles[i]) * (position - i);
+    }
+
+    // fractional sample index of a distance, clamped to the table
+    private double position(double distance) {
+        if (distance <= minDistance) {
+            return 0;
+        }
+        if (distance >= maxDistance) {
+            return velocities.length - 1;
+        }
+        return (distance - minDistance) * inverseStep;
+    }
+
+    // sample at or before a position, leaving room for the one after it
+    private int index(double position) {
+        return Math.min((int) position, velocities.length - 2);
+    }
+
+    public double getMinDistance() {
+        return minDistance;
+    }
+
+    public double getMaxDistance() {
+        return maxDistance;
+    }
+
+}
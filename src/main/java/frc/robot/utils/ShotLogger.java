@@ -0,0 +1,65 @@
+package frc.robot.utils;
+
+import org.littletonrobotics.junction.Logger;
+
+import frc.robot.subsystems.Shooter;
+
+public class ShotLogger {
+
+    /**
+     * Records every shot so the shooting map can be refit from the match logs
+     * When the Shooter counts a new shot, the distance from the fused pose, the
+     * commanded and measured RPMs, tilt, elevator height and robot velocity are
+     * logged under Shots/ on that cycle, with Shots/Count last
+     * The operator marks the most recent shot as made or missed from the button
+     * box, which logs Shots/ResultShot and Shots/Made
+     *
+     * ShotMapRefit reads these back out of the WPILOGs. The log only holds values
+     * that changed, so it takes the latest value of each key at the Count
+     */
+
+    private final Shooter shooter;
+    private final ShotSolver shotSolver;
+
+    private int lastShotCount;
+
+    public ShotLogger(Shooter shooter, ShotSolver shotSolver) {
+        this.shooter = shooter;
+        this.shotSolver = shotSolver;
+        lastShotCount = shooter.getShotCount();
+    }
+
+    // checks for a new shot, called every cycle after the scheduler runs
+    public void update() {
+        int shotCount = shooter.getShotCount();
+        if (shotCount == lastShotCount) {
+            return;
+        }
+        lastShotCount = shotCount;
+
+        Logger.recordOutput("Shots/DistanceInches", shotSolver.getSpeakerDistanceInches());
+        Logger.recordOutput("Shots/SolverDistanceInches", shotSolver.getDistanceInches());
+        Logger.recordOutput("Shots/CommandedRPMs", shooter.getFlywheelSetpointRPMs());
+        Logger.recordOutput("Shots/MeasuredRPMs", shooter.getVelocity());
+        Logger.recordOutput("Shots/TiltDegrees", shooter.getAbsoluteShooterTiltPosDegrees());
+        Logger.recordOutput("Shots/TiltGoalDegrees", shooter.getTiltGoalDegrees());
+        Logger.recordOutput("Shots/ElevatorRotations", shooter.getElevatorPosition());
+        Logger.recordOutput("Shots/RobotVelocityX", shotSolver.getFieldVelocityX());
+        Logger.recordOutput("Shots/RobotVelocityY", shotSolver.getFieldVelocityY());
+        Logger.recordOutput("Shots/Count", shotCount);
+    }
+
+    /**
+     * Marks the most recent shot, can be changed until the next shot
+     * Parameters:
+     * true if it went in
+     */
+    public void markLastShot(boolean made) {
+        if (lastShotCount == 0) {
+            return;
+        }
+        Logger.recordOutput("Shots/ResultShot", lastShotCount);
+        Logger.recordOutput("Shots/Made", made);
+    }
+
+}
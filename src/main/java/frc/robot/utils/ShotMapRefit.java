@@ -0,0 +1,261 @@
+package frc.robot.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import frc.robot.Constants.ShooterRegressionConstants;
+
+public class ShotMapRefit {
+
+    /**
+     * Refits ShooterRegressionConstants from the shots ShotLogger recorded
+     * Run on a laptop with
+     * ./gradlew refitShooterMap -Plogs=<WPILOG files or folders, comma separated>
+     * optionally with -PmaxSpeed=<m/s> and -Pbandwidth=<inches>
+     *
+     * Only shots marked made, and taken while the robot was moving slower than
+     * maxSpeed, are used, since the table is for a stationary robot. At each
+     * distance in the current table the new RPMs and tilt are a Gaussian weighted
+     * average of those shots, with bandwidth as the standard deviation in
+     * distance. Distances with too few shots near them keep their old values
+     *
+     * Prints the new arrays ready to paste into Constants
+     */
+
+    // only what the robot logged, a replayed log would have every shot twice
+    private static final String shotsPrefix = "RealOutputs/Shots/";
+
+    // total weight of shots needed near a distance before it's refit, roughly a
+    // count of shots within one bandwidth
+    private static final double minWeight = 1.5;
+
+    private static class Shot {
+        String log;
+        int number;
+        double distanceInches;
+        double commandedRPMs;
+        double tiltGoalDegrees;
+        double speed;
+        // null until the shot is marked
+        Boolean made;
+    }
+
+    public static void main(String[] args) throws IOException {
+        double maxSpeed = 0.25;
+        double bandwidth = 8.0;
+        List<File> logs = new ArrayList<>();
+
+        for (String arg : args) {
+            if (arg.startsWith("--maxSpeed=")) {
+                maxSpeed = Double.parseDouble(arg.substring("--maxSpeed=".length()));
+            } else if (arg.startsWith("--bandwidth=")) {
+                bandwidth = Double.parseDouble(arg.substring("--bandwidth=".length()));
+            } else {
+                addLogs(new File(arg), logs);
+            }
+        }
+
+        if (logs.isEmpty()) {
+            System.out.println("No .wpilog files given, pass them with -Plogs=<files or folders>");
+            return;
+        }
+
+        List<Shot> shots = new ArrayList<>();
+        for (File log : logs) {
+            readShots(log, shots);
+        }
+
+        List<Shot> used = new ArrayList<>();
+        int made = 0;
+        int missed = 0;
+        int unmarked = 0;
+        for (Shot shot : shots) {
+            if (shot.made == null) {
+                unmarked++;
+            } else if (shot.made) {
+                made++;
+                if (shot.speed <= maxSpeed && !Double.isNaN(shot.tiltGoalDegrees)) {
+                    used.add(shot);
+                }
+            } else {
+                missed++;
+            }
+        }
+
+        System.out.println(String.format(Locale.US,
+                "%d logs, %d shots: %d made, %d missed, %d unmarked, %d made shots slower than %.2f m/s used",
+                logs.size(), shots.size(), made, missed, unmarked, used.size(), maxSpeed));
+
+        double[] distances = ShooterRegressionConstants.distances;
+        double[] velocities = ShooterRegressionConstants.velocities.clone();
+        double[] angles = ShooterRegressionConstants.angles.clone();
+
+        System.out.println();
+        System.out.println("distance   weight    old RPMs -> new RPMs    old tilt -> new tilt   made/shots");
+        for (int i = 0; i < distances.length; i++) {
+            double weight = 0;
+            double velocitySum = 0;
+            double angleSum = 0;
+            for (Shot shot : used) {
+                double z = (shot.distanceInches - distances[i]) / bandwidth;
+                double w = Math.exp(-0.5 * z * z);
+                weight += w;
+                velocitySum += w * shot.commandedRPMs;
+                angleSum += w * shot.tiltGoalDegrees;
+            }
+
+            // make rate of every marked shot within one bandwidth, to show where the
+            // table is worst
+            int nearMade = 0;
+            int nearMarked = 0;
+            for (Shot shot : shots) {
+                if (shot.made != null && Math.abs(shot.distanceInches - distances[i]) <= bandwidth) {
+                    nearMarked++;
+                    if (shot.made) {
+                        nearMade++;
+                    }
+                }
+            }
+
+            String note = "";
+            if (weight >= minWeight) {
+                velocities[i] = velocitySum / weight;
+                angles[i] = angleSum / weight;
+            } else {
+                note = "  (kept, not enough shots)";
+            }
+
+            System.out.println(String.format(Locale.US, "%8.1f %8.2f %11.0f -> %-9.0f %11.2f -> %-9.2f %5d/%d%s",
+                    distances[i], weight, ShooterRegressionConstants.velocities[i], velocities[i],
+                    ShooterRegressionConstants.angles[i], angles[i], nearMade, nearMarked, note));
+        }
+
+        System.out.println();
+        System.out.println("public static double[] distances = new double[] " + format(distances, "%.0f") + "; // inches");
+        System.out.println("public static double[] velocities = new double[] " + format(velocities, "%.0f") + ";// RPMs");
+        System.out.println("public static double[] angles = new double[] " + format(angles, "%.1f") + "; // degrees");
+    }
+
+    private static void addLogs(File file, List<File> logs) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    addLogs(child, logs);
+                }
+            }
+        } else if (file.getName().endsWith(".wpilog")) {
+            logs.add(file);
+        }
+    }
+
+    /**
+     * Reads the Shots/ entries out of one log
+     * Values are only logged when they change, so the latest value of every key
+     * is tracked and a shot or a result is taken from them once every record with
+     * the same timestamp has been read
+     */
+    private static void readShots(File file, List<Shot> shots) throws IOException {
+        DataLogReader reader = new DataLogReader(file.getPath());
+        if (!reader.isValid()) {
+            System.out.println("Skipping " + file + ", not a valid WPILOG");
+            return;
+        }
+
+        // entry ID to the key after Shots/
+        Map<Integer, String> keys = new HashMap<>();
+        Map<String, Double> latestDoubles = new HashMap<>();
+        Map<Integer, Shot> logShots = new HashMap<>();
+
+        long pendingTimestamp = Long.MIN_VALUE;
+        boolean shotPending = false;
+        boolean resultPending = false;
+        boolean latestMade = false;
+
+        for (DataLogRecord record : reader) {
+            if (record.isStart()) {
+                DataLogRecord.StartRecordData start = record.getStartData();
+                int index = start.name.indexOf(shotsPrefix);
+                if (index >= 0) {
+                    keys.put(start.entry, start.name.substring(index + shotsPrefix.length()));
+                }
+                continue;
+            }
+            if (record.isControl()) {
+                continue;
+            }
+
+            String key = keys.get(record.getEntry());
+            if (key == null) {
+                continue;
+            }
+
+            if (record.getTimestamp() != pendingTimestamp) {
+                finishPending(file, shotPending, resultPending, latestDoubles, latestMade, logShots, shots);
+                shotPending = false;
+                resultPending = false;
+                pendingTimestamp = record.getTimestamp();
+            }
+
+            switch (key) {
+                case "Count":
+                    latestDoubles.put(key, (double) record.getInteger());
+                    shotPending = true;
+                    break;
+                case "ResultShot":
+                    latestDoubles.put(key, (double) record.getInteger());
+                    resultPending = true;
+                    break;
+                case "Made":
+                    latestMade = record.getBoolean();
+                    resultPending = true;
+                    break;
+                default:
+                    latestDoubles.put(key, record.getDouble());
+                    break;
+            }
+        }
+        finishPending(file, shotPending, resultPending, latestDoubles, latestMade, logShots, shots);
+    }
+
+    private static void finishPending(File file, boolean shotPending, boolean resultPending,
+            Map<String, Double> latestDoubles, boolean latestMade, Map<Integer, Shot> logShots, List<Shot> shots) {
+        if (shotPending) {
+            Shot shot = new Shot();
+            shot.log = file.getName();
+            shot.number = latestDoubles.get("Count").intValue();
+            shot.distanceInches = latestDoubles.getOrDefault("DistanceInches", Double.NaN);
+            shot.commandedRPMs = latestDoubles.getOrDefault("CommandedRPMs", Double.NaN);
+            shot.tiltGoalDegrees = latestDoubles.getOrDefault("TiltGoalDegrees", Double.NaN);
+            shot.speed = Math.hypot(latestDoubles.getOrDefault("RobotVelocityX", 0.0),
+                    latestDoubles.getOrDefault("RobotVelocityY", 0.0));
+            logShots.put(shot.number, shot);
+            shots.add(shot);
+        }
+        if (resultPending && latestDoubles.containsKey("ResultShot")) {
+            Shot shot = logShots.get(latestDoubles.get("ResultShot").intValue());
+            if (shot != null) {
+                shot.made = latestMade;
+            }
+        }
+    }
+
+    private static String format(double[] values, String format) {
+        StringBuilder builder = new StringBuilder("{ ");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(String.format(Locale.US, format, values[i]));
+        }
+        return builder.append(" }").toString();
+    }
+
+}
@@ -0,0 +1,175 @@
+package frc.robot.utils;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.util.Units;
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.Constants.SwerveBaseConstants;
+import frc.robot.Constants.VisionConstants;
+import frc.robot.subsystems.Shooter;
+import frc.robot.subsystems.SwerveBase;
+
+public class ShotSolver {
+
+    /**
+     * Firing solution for shooting while moving
+     * A note keeps the robot's velocity after it leaves, so instead of the
+     * speaker it's aimed at a virtual target moved back along the robot's
+     * velocity by the note's time of flight. Time of flight depends on distance,
+     * so the virtual target is iterated a few times
+     *
+     * Distances are measured from the camera like the regression data was, and
+     * the heading points the shooter side of the robot at the virtual target
+     * The solution is worked out once per cycle no matter how many commands ask
+     * for it
+     */
+
+    private final SwerveBase swerveBase;
+
+    private long solvedCycle = -1;
+
+    private final double[] fieldVelocity = new double[2];
+
+    private double speakerDistanceInches;
+    private double fieldVx;
+    private double fieldVy;
+
+    private double virtualTargetX;
+    private double virtualTargetY;
+    private double heading;
+    private double distanceInches;
+    private double timeOfFlightSeconds;
+    private double velocityRPMs;
+    private double tiltDegrees;
+
+    public ShotSolver(SwerveBase swerveBase) {
+        this.swerveBase = swerveBase;
+    }
+
+    // works out this cycle's solution if it hasn't been already
+    private void solve() {
+        long cycle = Logger.getTimestamp();
+        if (cycle == solvedCycle) {
+            return;
+        }
+        solvedCycle = cycle;
+
+        Pose2d pose = swerveBase.getPose();
+
+        double robotHeading = pose.getRotation().getRadians();
+        double cos = Math.cos(robotHeading);
+        double sin = Math.sin(robotHeading);
+
+        // robot velocity in the field frame, from the fused pose history the same
+        // way AimAtSpeakerCmd gets it. Zero until there's history
+        swerveBase.getFieldVelocity(fieldVelocity);
+        fieldVx = fieldVelocity[0];
+        fieldVy = fieldVelocity[1];
+
+        // where the camera is, since that's what the regression distances are from
+        double cameraX = pose.getX() + VisionConstants.robotToCam.getX() * cos
+                - VisionConstants.robotToCam.getY() * sin;
+        double cameraY = pose.getY() + VisionConstants.robotToCam.getX() * sin
+                + VisionConstants.robotToCam.getY() * cos;
+
+        double speakerX = FieldGeometry.getX(FieldGeometry.Target.SPEAKER);
+        double speakerY = FieldGeometry.getY(FieldGeometry.Target.SPEAKER);
+        speakerDistanceInches = Units.metersToInches(Math.hypot(speakerX - cameraX, speakerY - cameraY));
+
+        virtualTargetX = speakerX;
+        virtualTargetY = speakerY;
+        for (int i = 0; i < ShooterConstants.shotSolverIterations; i++) {
+            double distanceMeters = Math.hypot(virtualTargetX - cameraX, virtualTargetY - cameraY);
+            timeOfFlightSeconds = timeOfFlight(distanceMeters);
+            virtualTargetX = speakerX - fieldVx * timeOfFlightSeconds;
+            virtualTargetY = speakerY - fieldVy * timeOfFlightSeconds;
+        }
+
+        distanceInches = Units.metersToInches(Math.hypot(virtualTargetX - cameraX, virtualTargetY - cameraY));
+        velocityRPMs = Shooter.getRegressionVelocity(distanceInches);
+        tiltDegrees = Shooter.getRegressionAngle(distanceInches);
+        heading = MathUtil.angleModulus(Math.atan2(virtualTargetY - pose.getY(), virtualTargetX - pose.getX())
+                + SwerveBaseConstants.aimHeadingOffset);
+
+        Logger.recordOutput("ShotSolver/VirtualTargetX", virtualTargetX);
+        Logger.recordOutput("ShotSolver/VirtualTargetY", virtualTargetY);
+        Logger.recordOutput("ShotSolver/DistanceInches", distanceInches);
+        Logger.recordOutput("ShotSolver/TimeOfFlight", timeOfFlightSeconds);
+        Logger.recordOutput("ShotSolver/RPMs", velocityRPMs);
+        Logger.recordOutput("ShotSolver/Tilt", tiltDegrees);
+        Logger.recordOutput("ShotSolver/Heading", heading);
+    }
+
+    /**
+     * Seconds from the shot being taken to the note reaching a target this far
+     * away, using the RPMs the regression would shoot it at
+     */
+    private static double timeOfFlight(double distanceMeters) {
+        double rpms = Shooter.getRegressionVelocity(Units.metersToInches(distanceMeters));
+        double noteSpeed = rpms / 60.0 * Math.PI * ShooterConstants.flywheelDiameter
+                * ShooterConstants.noteExitEfficiency;
+        if (noteSpeed < 1E-3) {
+            return ShooterConstants.shotReleaseDelaySeconds;
+        }
+        return ShooterConstants.shotReleaseDelaySeconds + distanceMeters / noteSpeed;
+    }
+
+    public double getVirtualTargetX() {
+        solve();
+        return virtualTargetX;
+    }
+
+    public double getVirtualTargetY() {
+        solve();
+        return virtualTargetY;
+    }
+
+    // field relative robot heading that points the shooter at the virtual target,
+    // radians
+    public double getHeading() {
+        solve();
+        return heading;
+    }
+
+    // camera to the real speaker, ignoring the robot's velocity, inches
+    public double getSpeakerDistanceInches() {
+        solve();
+        return speakerDistanceInches;
+    }
+
+    // field relative robot velocity, m/s
+    public double getFieldVelocityX() {
+        solve();
+        return fieldVx;
+    }
+
+    public double getFieldVelocityY() {
+        solve();
+        return fieldVy;
+    }
+
+    // camera to the virtual target, what the RPMs and tilt are looked up with,
+    // inches
+    public double getDistanceInches() {
+        solve();
+        return distanceInches;
+    }
+
+    public double getTimeOfFlightSeconds() {
+        solve();
+        return timeOfFlightSeconds;
+    }
+
+    public double getVelocityRPMs() {
+        solve();
+        return velocityRPMs;
+    }
+
+    public double getTiltDegrees() {
+        solve();
+        return tiltDegrees;
+    }
+
+}
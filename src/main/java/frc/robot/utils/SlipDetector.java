@@ -0,0 +1,314 @@
+package frc.robot.utils;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.Constants.SwerveBaseConstants;
+
+public class SlipDetector {
+
+    /**
+     * Checks every odometry sample for a module that's slipping or has been
+     * knocked, before it reaches the pose estimator
+     *
+     * Each module's velocity is turned into the robot velocity it implies, using
+     * the gyro's yaw rate for the rotation, and compared against the average of
+     * the other modules. Velocities are taken over the last slipWindowSamples
+     * samples instead of between two samples, since the encoder positions come
+     * from unsynchronized status frames and one stale frame would look like a
+     * module stopping dead. A module has to be off by more than
+     * slipVelocityThreshold plus slipVelocityFraction of the speed for
+     * slipPersistSamples samples in a row before it's flagged, then the worst one
+     * has its distance replaced with what the other modules say it should have
+     * moved
+     *
+     * Once per cycle the chassis acceleration from the wheels is compared with the
+     * navX accelerometer. A hit shows up as a spike the wheels don't see, and all
+     * the wheels spinning at once shows up as acceleration the navX doesn't see.
+     * Neither can be corrected per module, so SwerveBase trusts vision more for
+     * slipWindowSeconds afterwards
+     *
+     * Distances and angles use the same conventions as
+     * SwerveBase.getModulePositions()
+     */
+
+    private final int moduleCount;
+    private final double[] moduleX;
+    private final double[] moduleY;
+
+    private boolean hasPrevious = false;
+    private double previousTimestamp;
+    private final double[] previousDistances;
+    private final double[] correctedDistances;
+
+    // ring of the last slipWindowSamples samples, the oldest is what velocities are
+    // measured from
+    private final int windowSize = SwerveBaseConstants.slipWindowSamples;
+    private final double[] windowTimestamps;
+    private final double[] windowHeadings;
+    private final double[] windowDistances;
+    private int windowStart = 0;
+    private int windowCount = 0;
+
+    // samples in a row each module has been over the threshold
+    private final int[] samplesOverThreshold;
+
+    // scratch space for the robot velocity implied by each module
+    private final double[] bodyVx;
+    private final double[] bodyVy;
+
+    // chassis velocity from the newest sample and from the start of the cycle
+    private double chassisVx;
+    private double chassisVy;
+    private double chassisTimestamp;
+    private double cycleStartVx;
+    private double cycleStartVy;
+    private double cycleStartTimestamp;
+    private boolean hasCycleStart = false;
+
+    // what happened since the last call to clearCycle(), for logging
+    private final boolean[] slippedThisCycle;
+    private double maxResidualThisCycle;
+    private boolean collisionThisCycle;
+    private boolean wheelSpinThisCycle;
+
+    private int eventCount = 0;
+    private double lastEventTimestamp = Double.NEGATIVE_INFINITY;
+
+    public SlipDetector(Translation2d[] moduleTranslations) {
+        moduleCount = moduleTranslations.length;
+        moduleX = new double[moduleCount];
+        moduleY = new double[moduleCount];
+        for (int i = 0; i < moduleCount; i++) {
+            moduleX[i] = moduleTranslations[i].getX();
+            moduleY[i] = moduleTranslations[i].getY();
+        }
+
+        previousDistances = new double[moduleCount];
+        correctedDistances = new double[moduleCount];
+        windowTimestamps = new double[windowSize];
+        windowHeadings = new double[windowSize];
+        windowDistances = new double[windowSize * moduleCount];
+        samplesOverThreshold = new int[moduleCount];
+        bodyVx = new double[moduleCount];
+        bodyVy = new double[moduleCount];
+        slippedThisCycle = new boolean[moduleCount];
+    }
+
+    /**
+     * Forgets the previous sample, used when the encoders or pose get reset
+     * The next sample is passed through as is
+     */
+    public void reset() {
+        hasPrevious = false;
+        hasCycleStart = false;
+    }
+
+    /**
+     * Checks one odometry sample
+     * Parameters:
+     * sample timestamp in seconds
+     * heading in radians
+     * drive distances and steer angles, read from offset to offset + module count
+     * array the distances to hand to the estimator get written into
+     * Returns true if a module was replaced
+     */
+    public boolean addSample(double timestampSeconds, double headingRadians, double[] driveDistances,
+            double[] steerAngles, int offset, double[] distancesOut) {
+
+        double dt = timestampSeconds - previousTimestamp;
+
+        if (!hasPrevious || dt <= 0) {
+            for (int i = 0; i < moduleCount; i++) {
+                previousDistances[i] = driveDistances[offset + i];
+                correctedDistances[i] = driveDistances[offset + i];
+                distancesOut[i] = correctedDistances[i];
+            }
+            previousTimestamp = timestampSeconds;
+            hasPrevious = true;
+            windowCount = 0;
+            for (int i = 0; i < moduleCount; i++) {
+                samplesOverThreshold[i] = 0;
+            }
+            addToWindow(timestampSeconds, headingRadians, driveDistances, offset);
+            return false;
+        }
+
+        addToWindow(timestampSeconds, headingRadians, driveDistances, offset);
+
+        // pass samples through until there's a full window to measure over
+        if (windowCount < windowSize) {
+            for (int i = 0; i < moduleCount; i++) {
+                correctedDistances[i] += driveDistances[offset + i] - previousDistances[i];
+                previousDistances[i] = driveDistances[offset + i];
+                distancesOut[i] = correctedDistances[i];
+            }
+            previousTimestamp = timestampSeconds;
+            return false;
+        }
+
+        double span = timestampSeconds - windowTimestamps[windowStart];
+        double omega = MathUtil.angleModulus(headingRadians - windowHeadings[windowStart]) / span;
+
+        double sumVx = 0;
+        double sumVy = 0;
+        for (int i = 0; i < moduleCount; i++) {
+            double speed = (driveDistances[offset + i] - windowDistances[windowStart * moduleCount + i]) / span;
+            double angle = steerAngles[offset + i];
+            // module velocity minus the part that comes from rotating
+            bodyVx[i] = speed * Math.cos(angle) + omega * moduleY[i];
+            bodyVy[i] = speed * Math.sin(angle) - omega * moduleX[i];
+            sumVx += bodyVx[i];
+            sumVy += bodyVy[i];
+        }
+
+        // only the worst module that's stayed over the threshold is flagged, one bad
+        // module also pulls every other module's comparison off by a third as much
+        int worst = -1;
+        double worstExcess = 0;
+        double worstPredictedVx = 0;
+        double worstPredictedVy = 0;
+        for (int i = 0; i < moduleCount; i++) {
+            double predictedVx = (sumVx - bodyVx[i]) / (moduleCount - 1);
+            double predictedVy = (sumVy - bodyVy[i]) / (moduleCount - 1);
+            double residual = Math.hypot(bodyVx[i] - predictedVx, bodyVy[i] - predictedVy);
+            double threshold = SwerveBaseConstants.slipVelocityThreshold
+                    + SwerveBaseConstants.slipVelocityFraction * Math.hypot(predictedVx, predictedVy);
+
+            maxResidualThisCycle = Math.max(maxResidualThisCycle, residual);
+
+            if (residual > threshold) {
+                samplesOverThreshold[i]++;
+            } else {
+                samplesOverThreshold[i] = 0;
+            }
+
+            if (samplesOverThreshold[i] >= SwerveBaseConstants.slipPersistSamples
+                    && residual - threshold > worstExcess) {
+                worst = i;
+                worstExcess = residual - threshold;
+                worstPredictedVx = predictedVx;
+                worstPredictedVy = predictedVy;
+            }
+        }
+
+        for (int i = 0; i < moduleCount; i++) {
+            double delta = driveDistances[offset + i] - previousDistances[i];
+
+            if (i == worst) {
+                // how far the wheel should have rolled along the direction it's pointing
+                double angle = steerAngles[offset + i];
+                double expectedVx = worstPredictedVx - omega * moduleY[i];
+                double expectedVy = worstPredictedVy + omega * moduleX[i];
+                delta = (expectedVx * Math.cos(angle) + expectedVy * Math.sin(angle)) * dt;
+            }
+
+            correctedDistances[i] += delta;
+            previousDistances[i] = driveDistances[offset + i];
+            distancesOut[i] = correctedDistances[i];
+        }
+
+        if (worst >= 0) {
+            chassisVx = worstPredictedVx;
+            chassisVy = worstPredictedVy;
+            slippedThisCycle[worst] = true;
+            recordEvent(timestampSeconds);
+        } else {
+            chassisVx = sumVx / moduleCount;
+            chassisVy = sumVy / moduleCount;
+        }
+        chassisTimestamp = timestampSeconds;
+
+        previousTimestamp = timestampSeconds;
+
+        return worst >= 0;
+    }
+
+    // adds a sample to the window, dropping the oldest when it's full
+    private void addToWindow(double timestampSeconds, double headingRadians, double[] driveDistances, int offset) {
+        int slot;
+        if (windowCount < windowSize) {
+            slot = (windowStart + windowCount) % windowSize;
+            windowCount++;
+        } else {
+            slot = windowStart;
+            windowStart = (windowStart + 1) % windowSize;
+        }
+
+        windowTimestamps[slot] = timestampSeconds;
+        windowHeadings[slot] = headingRadians;
+        for (int i = 0; i < moduleCount; i++) {
+            windowDistances[slot * moduleCount + i] = driveDistances[offset + i];
+        }
+    }
+
+    /**
+     * Compares the wheels' chassis acceleration over the last cycle with the
+     * accelerometer, called once per cycle after the samples are added
+     * Parameters:
+     * magnitude of the accelerometer's linear acceleration, gravity removed, m/s^2
+     */
+    public void checkAcceleration(double measuredAccelMetersPerSecSq) {
+        if (hasCycleStart && chassisTimestamp > cycleStartTimestamp) {
+            double wheelAccel = Math.hypot(chassisVx - cycleStartVx, chassisVy - cycleStartVy)
+                    / (chassisTimestamp - cycleStartTimestamp);
+
+            if (measuredAccelMetersPerSecSq > SwerveBaseConstants.collisionAccelThreshold) {
+                collisionThisCycle = true;
+                recordEvent(chassisTimestamp);
+            } else if (wheelAccel - measuredAccelMetersPerSecSq > SwerveBaseConstants.wheelSpinAccelThreshold) {
+                wheelSpinThisCycle = true;
+                recordEvent(chassisTimestamp);
+            }
+        }
+
+        if (hasPrevious) {
+            cycleStartVx = chassisVx;
+            cycleStartVy = chassisVy;
+            cycleStartTimestamp = chassisTimestamp;
+            hasCycleStart = true;
+        }
+    }
+
+    private void recordEvent(double timestampSeconds) {
+        eventCount++;
+        lastEventTimestamp = timestampSeconds;
+    }
+
+    // true for slipWindowSeconds after anything was detected
+    public boolean isSlipping(double timestampSeconds) {
+        return timestampSeconds - lastEventTimestamp < SwerveBaseConstants.slipWindowSeconds;
+    }
+
+    // modules that were replaced since clearCycle(), indexed by module ID
+    public boolean[] getSlippedThisCycle() {
+        return slippedThisCycle;
+    }
+
+    public double getMaxResidualThisCycle() {
+        return maxResidualThisCycle;
+    }
+
+    public boolean isCollisionThisCycle() {
+        return collisionThisCycle;
+    }
+
+    public boolean isWheelSpinThisCycle() {
+        return wheelSpinThisCycle;
+    }
+
+    // total number of detections since startup
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    // starts a new cycle of logging values
+    public void clearCycle() {
+        for (int i = 0; i < moduleCount; i++) {
+            slippedThisCycle[i] = false;
+        }
+        maxResidualThisCycle = 0;
+        collisionThisCycle = false;
+        wheelSpinThisCycle = false;
+    }
+
+}
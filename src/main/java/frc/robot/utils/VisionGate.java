@@ -0,0 +1,118 @@
+package frc.robot.utils;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import frc.robot.Constants.VisionConstants;
+
+public class VisionGate {
+
+    /**
+     * Decides whether a vision pose estimate is believable before it's fused
+     * Checks, in order:
+     * the estimate came with std devs, Vision gives none when it can't be trusted
+     * the pose is on the field, from the AprilTagFieldLayout's size
+     * the robot isn't floating or tipped over
+     * the pose is consistent with where the robot was estimated to be at the frame
+     * timestamp, as a Mahalanobis distance using the odometry's expected drift
+     * plus the measurement's own std devs
+     *
+     * If nothing has passed the consistency check for maxGateRejectSeconds,
+     * odometry is assumed to be the one that's wrong and the check is skipped
+     * until a measurement gets through
+     */
+
+    public enum Result {
+        ACCEPTED,
+        UNTRUSTED,
+        OUT_OF_FIELD,
+        TOO_HIGH,
+        TILTED,
+        INCONSISTENT
+    }
+
+    private final double fieldLength;
+    private final double fieldWidth;
+
+    // counts of every result since startup, indexed by Result.ordinal()
+    private final int[] counts = new int[Result.values().length];
+
+    private double lastAcceptedTimestamp = Double.NEGATIVE_INFINITY;
+
+    public VisionGate(AprilTagFieldLayout fieldLayout) {
+        fieldLength = fieldLayout.getFieldLength();
+        fieldWidth = fieldLayout.getFieldWidth();
+    }
+
+    /**
+     * Checks one estimate and counts the result
+     * Parameters:
+     * estimated robot pose
+     * timestamp of the frame it came from, seconds
+     * std devs the estimate would be fused with, or null if Vision won't trust it
+     * estimated x, y and theta at the frame timestamp, or null if there's no
+     * history to compare against
+     */
+    public Result check(Pose3d estimatedPose, double timestampSeconds, Matrix<N3, N1> stdDevs,
+            double[] predictedPose) {
+        Result result = evaluate(estimatedPose, timestampSeconds, stdDevs, predictedPose);
+
+        counts[result.ordinal()]++;
+        if (result == Result.ACCEPTED) {
+            lastAcceptedTimestamp = timestampSeconds;
+        }
+
+        return result;
+    }
+
+    private Result evaluate(Pose3d estimatedPose, double timestampSeconds, Matrix<N3, N1> stdDevs,
+            double[] predictedPose) {
+        if (stdDevs == null) {
+            return Result.UNTRUSTED;
+        }
+
+        double margin = VisionConstants.fieldBorderMargin;
+        if (estimatedPose.getX() < -margin || estimatedPose.getX() > fieldLength + margin
+                || estimatedPose.getY() < -margin || estimatedPose.getY() > fieldWidth + margin) {
+            return Result.OUT_OF_FIELD;
+        }
+
+        if (Math.abs(estimatedPose.getZ()) > VisionConstants.maxPoseHeight) {
+            return Result.TOO_HIGH;
+        }
+
+        if (Math.abs(estimatedPose.getRotation().getX()) > VisionConstants.maxPoseTilt
+                || Math.abs(estimatedPose.getRotation().getY()) > VisionConstants.maxPoseTilt) {
+            return Result.TILTED;
+        }
+
+        if (predictedPose == null
+                || timestampSeconds - lastAcceptedTimestamp > VisionConstants.maxGateRejectSeconds) {
+            return Result.ACCEPTED;
+        }
+
+        double dx = estimatedPose.getX() - predictedPose[0];
+        double dy = estimatedPose.getY() - predictedPose[1];
+        double dtheta = MathUtil.angleModulus(estimatedPose.getRotation().getZ() - predictedPose[2]);
+
+        double varianceX = square(VisionConstants.GATE_ODOMETRY_STDS.get(0, 0)) + square(stdDevs.get(0, 0));
+        double varianceY = square(VisionConstants.GATE_ODOMETRY_STDS.get(1, 0)) + square(stdDevs.get(1, 0));
+        double varianceTheta = square(VisionConstants.GATE_ODOMETRY_STDS.get(2, 0)) + square(stdDevs.get(2, 0));
+
+        double mahalanobisSquared = dx * dx / varianceX + dy * dy / varianceY + dtheta * dtheta / varianceTheta;
+
+        return mahalanobisSquared > VisionConstants.maxMahalanobisSquared ? Result.INCONSISTENT : Result.ACCEPTED;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    public int getCount(Result result) {
+        return counts[result.ordinal()];
+    }
+
+}
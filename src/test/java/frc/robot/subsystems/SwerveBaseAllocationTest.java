@@ -0,0 +1,89 @@
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+class SwerveBaseAllocationTest {
+
+    /**
+     * Checks that the drive path allocates nothing per call
+     * Off the robot, SwerveBase runs on ModuleIOSim and GyroIOSim, so this goes
+     * through the same module math as a teleop or path following cycle
+     * Each method is warmed up first so class loading and the interpreter's first
+     * calls aren't counted
+     */
+
+    private static final int warmupCalls = 20_000;
+    private static final int measuredCalls = 10_000;
+
+    private static com.sun.management.ThreadMXBean threadBean;
+    private static SwerveBase swerveBase;
+
+    // built once, outside of what's measured, like PathPlanner hands them in
+    private static final ChassisSpeeds speeds = new ChassisSpeeds(1.5, -0.75, 2.0);
+
+    @BeforeAll
+    static void setup() {
+        assertTrue(HAL.initialize(500, 0));
+
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        swerveBase = new SwerveBase();
+        // fills in the gyro and module snapshots the drive path reads
+        swerveBase.periodic();
+    }
+
+    // the odometry notifier would otherwise keep sampling for the rest of the run
+    @AfterAll
+    static void teardown() {
+        swerveBase.stopOdometryThread();
+    }
+
+    @Test
+    void driveDoesNotAllocate() {
+        assertEquals(0, bytesAllocated(i -> swerveBase.drive(1.0, 0.5, (i & 1) == 0 ? 1.0 : -1.0, true)));
+        assertEquals(0, bytesAllocated(i -> swerveBase.drive(1.0, 0.5, 1.0, false)));
+    }
+
+    @Test
+    void driveFieldRelativeDoesNotAllocate() {
+        assertEquals(0, bytesAllocated(i -> swerveBase.driveFieldRelative(speeds)));
+    }
+
+    @Test
+    void driveRobotRelativeDoesNotAllocate() {
+        assertEquals(0, bytesAllocated(i -> swerveBase.driveRobotRelative(speeds)));
+    }
+
+    private interface DriveCall {
+        void run(int i);
+    }
+
+    // bytes the current thread allocated across measuredCalls, after warming up
+    // Not divided per call, so a single allocation anywhere in the run still fails
+    private static long bytesAllocated(DriveCall call) {
+        for (int i = 0; i < warmupCalls; i++) {
+            call.run(i);
+        }
+
+        long before = threadBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < measuredCalls; i++) {
+            call.run(i);
+        }
+        long after = threadBean.getCurrentThreadAllocatedBytes();
+
+        return after - before;
+    }
+
+}